@@ -0,0 +1,104 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import com.teamtreehouse.contactmgr.search.ContactSearch;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+//ENTRY 23
+/**Entry 23: Benchmarks
+ * Shared JMH state: a fresh H2 database filled with a given number of contacts
+ * 1. JMH runs every benchmark and every rows value in its own forked JVM, so an in-memory
+ *    H2 database is always empty when the trial starts
+ * 2. Before Application is touched we point it to that database with hibernate.* system
+ *    properties (see Application step 23-1), turn show_sql off and opt in to the
+ *    second-level and query cache (ENTRY 21). The search index goes to a new temporary
+ *    directory on disk like it does for a file database (ENTRY 32), removed at exit
+ * 3. The table is filled with saveAll() and the generated ids are kept so benchmarks can
+ *    pick existing ids
+ * 4. newContact() gives contacts with an email and phone nobody used yet*/
+
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    public static final String URL = "jdbc:h2:mem:contactmgr-bench;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64";
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private int[] ids;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //23-2: fresh in-memory database:
+        configure(URL);
+
+        //23-3: fill the table:
+        List<Integer> saved = Application.saveAll(IntStream.range(0, rows).mapToObj(BenchmarkDatabase::contact));
+        ids = saved.stream().mapToInt(Integer::intValue).toArray();
+        sequence.set(rows);
+    }
+
+    public static void configure(String url){
+        System.setProperty("hibernate.connection.url", url);
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("hibernate.show_sql", "false");
+        System.setProperty("hibernate.cache.use_second_level_cache", "true");
+        System.setProperty("hibernate.cache.use_query_cache", "true");
+        System.setProperty(ContactSearch.DIRECTORY, searchDirectory().toString());
+    }
+
+    private static Path searchDirectory(){
+        try {
+            Path directory = Files.createTempDirectory("contactmgr-search");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(directory)));
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path directory){
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            //only a temporary directory left behind
+        }
+    }
+
+    public static Contact contact(int i){
+        return new ContactBuilder("First" + i, "Last" + i)
+                .withEmail("contact" + i + "@bench.test")
+                .withPhone(5550000000L + i)
+                .build();
+    }
+
+    //23-4: contact that is not in the table yet:
+    public Contact newContact(){
+        return contact(sequence.getAndIncrement());
+    }
+
+    public int randomId(){
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    public int id(int index){
+        return ids[index % ids.length];
+    }
+}
@@ -0,0 +1,83 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//ENTRY 23
+/**Entry 23: Benchmarks
+ * One benchmark per CRUD method of Application, each against a BenchmarkDatabase of
+ * 1k, 100k and 1M contacts. Threads are set with gradle jmh -PjmhThreads=<n>
+ * 1. save() inserts a new contact every call
+ * 2. fetchAllContacts() reads the whole table
+ * 3. findContactById() reads a random existing contact
+ * 4. update() changes the first name of a contact owned by the calling thread, so threads
+ *    never update the same row
+ * 5. delete() removes a contact saved right before the call (the save is not measured)
+ * */
+
+public class ContactCrudBenchmark {
+
+    //23-4: one contact per thread to update:
+    @State(Scope.Thread)
+    public static class OwnContact {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        Contact contact;
+        int edits;
+
+        @Setup(Level.Iteration)
+        public void load(BenchmarkDatabase database) {
+            contact = Application.findContactById(database.id(THREADS.getAndIncrement()));
+        }
+    }
+
+    //23-5: a contact to delete:
+    @State(Scope.Thread)
+    public static class SavedContact {
+        Contact contact;
+
+        @Setup(Level.Invocation)
+        public void save(BenchmarkDatabase database) {
+            contact = database.newContact();
+            Application.save(contact);
+        }
+    }
+
+    //23-1:
+    @Benchmark
+    public int save(BenchmarkDatabase database) {
+        return Application.save(database.newContact());
+    }
+
+    //23-2:
+    @Benchmark
+    public List<Contact> fetchAllContacts() {
+        return Application.fetchAllContacts();
+    }
+
+    //23-3:
+    @Benchmark
+    public Contact findContactById(BenchmarkDatabase database) {
+        return Application.findContactById(database.randomId());
+    }
+
+    //23-4:
+    @Benchmark
+    public void update(OwnContact own) {
+        own.contact.setFirstName("Edit" + own.edits++);
+        Application.update(own.contact);
+    }
+
+    //23-5:
+    @Benchmark
+    public void delete(SavedContact saved) {
+        Application.delete(saved.contact);
+    }
+}
@@ -0,0 +1,123 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.RetryPolicy;
+import com.teamtreehouse.contactmgr.metrics.OperationStats;
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.StatelessSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//ENTRY 37
+/**Entry 37: Optimistic Locking
+ * Many writers updating the same few contacts with Application.updateWithRetry()
+ * 1. The hot set is hotContacts contacts with phone 0. Every call adds 1 to the phone of a
+ *    random hot contact, so every committed update must be visible in the sum of the phones
+ * 2. After the trial the sum of the phones is compared with the number of updates that
+ *    returned. If one was lost (overwritten by another writer) the trial fails
+ * 3. The pool gets 64 connections so the pool is not what limits the writers
+ * 4. main() runs it with 1, 2, 4, 8, 16, 32 and 64 threads and prints the throughput per
+ *    thread count: gradle contentionBenchmark. The conflicts and retries of each trial
+ *    are printed by the forked JVM
+ * NOTE: with fewer hot contacts than threads most writers collide, the throughput then
+ *    shows the cost of the retries rather than how it scales with cores*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark {
+    public static final String URL = "jdbc:h2:mem:contactmgr-contention;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64";
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    //64 writers on 16 contacts collide a lot, do not give up:
+    private static final RetryPolicy POLICY = new RetryPolicy.RetryPolicyBuilder()
+            .withMaxAttempts(1000)
+            .build();
+
+    @Param({"16", "1024"})
+    public int hotContacts;
+
+    private int[] ids;
+    private final LongAdder committed = new LongAdder();
+
+    //37-1: the hot set:
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.configure(URL);
+        System.setProperty("hibernate.hikari.maximumPoolSize", "64");
+        ids = Application.saveAll(IntStream.range(0, hotContacts).mapToObj(i -> {
+            Contact contact = BenchmarkDatabase.contact(i);
+            contact.setPhone(0L);
+            return contact;
+        })).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Benchmark
+    public Contact increment() {
+        int id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        Contact contact = Application.updateWithRetry(id, c -> c.setPhone(c.getPhone() + 1), POLICY);
+        committed.increment();
+        return contact;
+    }
+
+    //37-2: no lost updates:
+    @TearDown(Level.Trial)
+    public void verify() {
+        StatelessSession session = Application.getSessionFactory().openStatelessSession();
+        long sum;
+        try {
+            sum = session.createQuery("select sum(c.phone) from Contact c where c.id in (:ids)", Long.class)
+                    .setParameterList("ids", Arrays.stream(ids).boxed().collect(Collectors.toList()))
+                    .getSingleResult();
+        } finally {
+            session.close();
+        }
+        OperationStats update = Application.metrics().get("UPDATE");
+        System.out.printf("%ncommitted=%d, sum of phones=%d, conflicts=%d, retries=%d%n",
+                committed.sum(), sum, update.getConflicts(), update.getRetries());
+        if (sum != committed.sum()) {
+            throw new IllegalStateException("Lost updates: " + (committed.sum() - sum));
+        }
+    }
+
+    //37-4: gradle contentionBenchmark
+    public static void main(String[] args) throws RunnerException {
+        StringBuilder summary = new StringBuilder(String.format("%n%8s %12s %14s%n", "threads", "hotContacts", "updates/s"));
+        for (int threads : THREADS) {
+            Collection<RunResult> results = new Runner(new OptionsBuilder()
+                    .include(ContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+            for (RunResult result : results) {
+                summary.append(String.format("%8d %12s %14.0f%n", threads,
+                        result.getParams().getParam("hotContacts"), result.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.print(summary);
+    }
+}
@@ -0,0 +1,42 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+//ENTRY 24
+/**Entry 24: Finders
+ * Lookups through the indexed finders of Application on 1k, 100k and 1M contacts. With 1M
+ * rows most random lookups miss the second-level cache (it holds 100k entries), so these
+ * numbers are mostly the index lookup in H2
+ * 1. findByEmail() of a random existing email
+ * 2. findByPhone() of a random existing phone
+ * 3. findByLastNamePrefix() of a random 4 digit prefix ("Last1234..."), first 20 results
+ * */
+
+public class FinderBenchmark {
+
+    //24-1:
+    @Benchmark
+    public Contact findByEmail(BenchmarkDatabase database) {
+        int i = ThreadLocalRandom.current().nextInt(database.rows);
+        return Application.findByEmail("contact" + i + "@bench.test");
+    }
+
+    //24-2:
+    @Benchmark
+    public List<Contact> findByPhone(BenchmarkDatabase database) {
+        int i = ThreadLocalRandom.current().nextInt(database.rows);
+        return Application.findByPhone(5550000000L + i);
+    }
+
+    //24-3:
+    @Benchmark
+    public List<Contact> findByLastNamePrefix(BenchmarkDatabase database) {
+        int i = ThreadLocalRandom.current().nextInt(Math.min(database.rows, 10000));
+        return Application.findByLastNamePrefix("Last" + i, 20);
+    }
+}
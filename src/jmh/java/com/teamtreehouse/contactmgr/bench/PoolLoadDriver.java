@@ -0,0 +1,154 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import com.teamtreehouse.contactmgr.pool.HikariConnectionProvider;
+import com.teamtreehouse.contactmgr.pool.PoolMetrics;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+import org.hibernate.service.ServiceRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//ENTRY 22
+/**Entry 22: Connection Pool
+ * Multi-threaded load test comparing Hibernate's built-in pool with HikariCP against a
+ * local H2 file database (./data/loadtest, the real ./data/contactmgr is not touched)
+ * 1. Run it with: gradle poolLoadTest -PpoolLoadArgs="[threads] [seconds] [poolSize]",
+ *    defaults are 32 threads, 10 seconds and a pool of 10 connections. It lives with the
+ *    benchmarks so it is not shipped with the main classes
+ * 2. Both runs use the same hibernate.cfg.xml, only the connection provider is swapped.
+ *    The second-level cache is off and show_sql is off so every operation really needs a
+ *    connection and we do not measure printing
+ * 3. Each operation is the mix of the Application: open a session, one insert in a
+ *    transaction in 1 out of 5 operations, otherwise a read by id
+ * 4. The threads run for the given time, the HikariCP pool metrics are printed before its
+ *    pool is closed and at the end the throughput of both runs is printed
+ * 5. The built-in pool does not wait for a free connection, with more threads than
+ *    connections it refuses operations. Those are rolled back, counted and printed, only
+ *    the operations that went through count for the throughput
+ * */
+
+public class PoolLoadDriver {
+    private static final String URL = "jdbc:h2:./data/loadtest;QUERY_CACHE_SIZE=64";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        //22-2: same workload on both pools:
+        LongAdder builtInRefused = new LongAdder();
+        LongAdder hikariRefused = new LongAdder();
+        double builtIn = run(DriverManagerConnectionProviderImpl.class.getName(), threads, seconds, poolSize,
+                builtInRefused);
+        double hikari = run(HikariConnectionProvider.class.getName(), threads, seconds, poolSize, hikariRefused);
+
+        //22-4: print the results:
+        System.out.printf("%nthreads=%d, pool size=%d, %d seconds each%n", threads, poolSize, seconds);
+        System.out.printf("built-in pool: %,.0f ops/s, %,d refused%n", builtIn, builtInRefused.sum());
+        System.out.printf("HikariCP     : %,.0f ops/s (%.2fx), %,d refused%n", hikari, hikari / builtIn,
+                hikariRefused.sum());
+    }
+
+    private static double run(String provider, int threads, int seconds, int poolSize, LongAdder refused)
+            throws Exception {
+        SessionFactory sessionFactory = buildSessionFactory(provider, poolSize);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int maxId = seed(sessionFactory);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+            List<Future<Long>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> work(sessionFactory, maxId, deadline, refused)));
+            }
+            long operations = 0;
+            for (Future<Long> worker : workers) {
+                operations += worker.get();
+            }
+
+            //22-4: pool metrics, only HikariCP reports them:
+            PoolMetrics metrics = PoolMetrics.forPool("loadtest");
+            if (metrics != null) {
+                System.out.println(metrics.snapshot());
+            }
+            return operations / (double) seconds;
+        } finally {
+            executor.shutdown();
+            sessionFactory.close();
+        }
+    }
+
+    //22-3: the operation mix:
+    private static long work(SessionFactory sessionFactory, int maxId, long deadline, LongAdder refused){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long operations = 0;
+        while (System.nanoTime() < deadline) {
+            Session session = sessionFactory.openSession();
+            try {
+                if (random.nextInt(5) == 0) {
+                    session.beginTransaction();
+                    session.save(new ContactBuilder("Load", "Test")
+                            .withEmail("load" + random.nextLong() + "@test.com")
+                            .build());
+                    session.getTransaction().commit();
+                } else {
+                    session.get(Contact.class, 1 + random.nextInt(maxId));
+                }
+                operations++;
+            } catch (HibernateException e) {
+                //22-5: no connection left in the built-in pool:
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                refused.increment();
+            } finally {
+                session.close();
+            }
+        }
+        return operations;
+    }
+
+    private static int seed(SessionFactory sessionFactory){
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        for (int i = 0; i < 1000; i++) {
+            session.save(new ContactBuilder("Seed", "Contact" + i)
+                    .withEmail("seed" + System.nanoTime() + "." + i + "@test.com")
+                    .build());
+        }
+        session.getTransaction().commit();
+        Integer maxId = session.createQuery("select max(c.id) from Contact c", Integer.class).getSingleResult();
+        session.close();
+        return maxId;
+    }
+
+    //22-2: swap only the connection provider:
+    private static SessionFactory buildSessionFactory(String provider, int poolSize){
+        final ServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .configure()
+                .applySetting(AvailableSettings.URL, URL)
+                .applySetting(AvailableSettings.CONNECTION_PROVIDER, provider)
+                .applySetting(AvailableSettings.POOL_SIZE, String.valueOf(poolSize))
+                .applySetting("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize))
+                .applySetting("hibernate.hikari.poolName", "loadtest")
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false")
+                .applySetting(AvailableSettings.USE_QUERY_CACHE, "false")
+                .applySetting(AvailableSettings.SHOW_SQL, "false")
+                .build();
+        return new MetadataSources(registry).buildMetadata().buildSessionFactory();
+    }
+}
@@ -0,0 +1,44 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.ContactSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+//ENTRY 31
+/**Entry 31: Contact Summaries
+ * Listing with full entities against listing with ContactSummary projections, on 1k,
+ * 100k and 1M contacts. Compare the gc.alloc.rate.norm lines (bytes per operation) as
+ * well as the latency
+ * 1. The whole table: fetchAllContacts() against streamSummaries()
+ * 2. One page of 100 at a random position: fetchPage() against listSummaries()
+ * */
+
+public class ProjectionBenchmark {
+    private static final int PAGE = 100;
+
+    //31-1:
+    @Benchmark
+    public List<Contact> allAsEntities() {
+        return Application.fetchAllContacts();
+    }
+
+    @Benchmark
+    public void allAsSummaries(Blackhole blackhole) {
+        Application.streamSummaries(blackhole::consume);
+    }
+
+    //31-2:
+    @Benchmark
+    public List<Contact> pageAsEntities(BenchmarkDatabase database) {
+        return Application.fetchPage(database.randomId() - 1, PAGE);
+    }
+
+    @Benchmark
+    public List<ContactSummary> pageAsSummaries(BenchmarkDatabase database) {
+        return Application.listSummaries(database.randomId() - 1, PAGE);
+    }
+}
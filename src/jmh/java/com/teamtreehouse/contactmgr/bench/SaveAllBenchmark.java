@@ -0,0 +1,52 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+//ENTRY 19
+/**Entry 19: Batched Bulk Insert
+ * Rows per second of Application.saveAll()
+ * 1. Every call saves CONTACTS new contacts, the scores are per contact
+ *    (@OperationsPerInvocation), so they compare directly with ContactCrudBenchmark.save
+ * 2. batchSize 1 sends one INSERT per round trip like save() does (but in one session and
+ *    one transaction per chunk), 50 is hibernate.jdbc.batch_size from hibernate.cfg.xml
+ * 3. Both commit every 20 batches, like saveAll(Collection)
+ * Run it alone with: gradle jmh -PjmhInclude=SaveAllBenchmark*/
+
+@State(Scope.Benchmark)
+public class SaveAllBenchmark {
+    public static final String URL = "jdbc:h2:mem:contactmgr-saveall;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64";
+    private static final int CONTACTS = 10_000;
+    private static final int BATCHES_PER_TRANSACTION = 20;
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.configure(URL);
+        //19-1: start the SessionFactory outside of the measurement:
+        Application.getSessionFactory();
+    }
+
+    //19-1: contacts nobody saved yet, every call:
+    @Benchmark
+    @OperationsPerInvocation(CONTACTS)
+    public List<Integer> saveAll() {
+        int first = sequence.getAndAdd(CONTACTS);
+        return Application.saveAll(IntStream.range(first, first + CONTACTS).mapToObj(BenchmarkDatabase::contact),
+                batchSize, BATCHES_PER_TRANSACTION);
+    }
+}
@@ -0,0 +1,51 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.ContactSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+//ENTRY 32
+/**Entry 32: Search
+ * Full-text search and type-ahead on 1k, 100k and 1M contacts, first page of 20. The
+ * sample mode p99 is the number to watch (the goal is below 10 ms)
+ * 1. search() of a whole last name ("Last1234")
+ * 2. search() of the beginning of a first name ("First12")
+ * 3. suggest() of the beginning of a last name ("last12")
+ * 4. The trial starts once the index has every contact (it is built in the background)
+ * */
+
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final int PAGE = 20;
+
+    //32-4: after BenchmarkDatabase filled the table:
+    @Setup(Level.Trial)
+    public void awaitIndex(BenchmarkDatabase database) {
+        Application.refreshSearch();
+    }
+
+    //32-1:
+    @Benchmark
+    public List<ContactSummary> searchWord(BenchmarkDatabase database) {
+        return Application.search("Last" + ThreadLocalRandom.current().nextInt(database.rows), 0, PAGE);
+    }
+
+    //32-2:
+    @Benchmark
+    public List<ContactSummary> searchPrefix() {
+        return Application.search("First" + ThreadLocalRandom.current().nextInt(100), 0, PAGE);
+    }
+
+    //32-3:
+    @Benchmark
+    public List<ContactSummary> suggest() {
+        return Application.suggest("last" + ThreadLocalRandom.current().nextInt(100), PAGE);
+    }
+}
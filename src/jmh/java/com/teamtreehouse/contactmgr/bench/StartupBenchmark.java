@@ -0,0 +1,69 @@
+package com.teamtreehouse.contactmgr.bench;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+//ENTRY 34
+/**Entry 34: Faster Startup
+ * Time from a fresh JVM to the result of the first query, with and without fast start
+ * 1. Single shot: every fork is a new JVM that calls findContactById() once. That call
+ *    builds the SessionFactory (see Application step 34-1), so bootstrap, schema check and
+ *    the query itself are all in the measured time
+ * 2. The database is a file in build/startup-bench that survives the forks, like
+ *    ./data/contactmgr survives restarts. Only the first fast start fork updates the schema
+ * 3. gradle jmh uses throughput/average/sample mode for everything, which does not work
+ *    for a single call per JVM. So this one is excluded there and run by its own main()
+ *    with: gradle startupBenchmark
+ * NOTE: the average over the forks is the number to compare, ignore the first fork of
+ *    each mode when looking at single results*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    public static final String URL = "jdbc:h2:./build/startup-bench/contactmgr;QUERY_CACHE_SIZE=64";
+
+    @Param({"false", "true"})
+    public String fastStart;
+
+    //34-2: point Application to the benchmark database before it is touched:
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("hibernate.connection.url", URL);
+        System.setProperty("hibernate.show_sql", "false");
+        System.setProperty("hibernate.contactmgr.fast_start", fastStart);
+    }
+
+    //34-1:
+    @Benchmark
+    public Contact firstQuery() {
+        return Application.findContactById(1);
+    }
+
+    //34-3: gradle startupBenchmark
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StartupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
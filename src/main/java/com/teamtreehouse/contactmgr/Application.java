@@ -1,16 +1,52 @@
 package com.teamtreehouse.contactmgr;
 
+import com.teamtreehouse.contactmgr.cache.CacheStats;
+import com.teamtreehouse.contactmgr.feed.ChangeFeed;
+import com.teamtreehouse.contactmgr.feed.ContactChange;
+import com.teamtreehouse.contactmgr.metrics.ContactMetrics;
+import com.teamtreehouse.contactmgr.metrics.Operation;
+import com.teamtreehouse.contactmgr.metrics.OperationStats;
 import com.teamtreehouse.contactmgr.model.Contact;
 import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import com.teamtreehouse.contactmgr.model.ContactSummary;
+import com.teamtreehouse.contactmgr.pool.HikariConnectionProvider;
+import com.teamtreehouse.contactmgr.pool.PoolMetrics;
+import com.teamtreehouse.contactmgr.schema.SchemaMigrator;
+import com.teamtreehouse.contactmgr.search.ContactSearch;
+import net.sf.ehcache.CacheManager;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
+import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.service.ServiceRegistry;
 
+import javax.persistence.OptimisticLockException;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 //ENTRY 3; ENTRY 5; ENTRY 9
 /**Entry 3: Making main method on the Application.java
@@ -53,6 +89,29 @@ import java.util.List;
  *7. You cannot directly pass in MetadataSources to the field sessionFactory because we
  *   need to build the registry first!
  *
+ *Entry 23: Benchmarks
+ * 1. Any system property starting with hibernate. overrides the same setting from
+ *    hibernate.cfg.xml. The JMH benchmarks in src/jmh/java use it to run against a fresh
+ *    in-memory H2 database with show_sql off, without touching ./data/contactmgr
+ * 2. The CRUD methods are public now so the benchmarks (and other callers) can use them
+ *
+ *Entry 33: Sharding
+ * 1. builSessionFactory(settings) builds a SessionFactory from hibernate.cfg.xml with extra
+ *    settings on top. shard.ShardedContactStore uses it to build one SessionFactory per
+ *    shard database, the no argument version still builds the one of this class
+ *
+ *Entry 34: Faster Startup
+ * 1. The NOTE of step 5-2 is not true anymore: the SessionFactory lives in the nested
+ *    SessionFactoryHolder class, and the JVM initializes a class only the first time it is
+ *    used. So it is built by the first getSessionFactory() call, exactly once and thread
+ *    safe without any locking. Tools that only call builSessionFactory(settings), like
+ *    the shard store and migrate(), do not build the default one anymore
+ * 2. With hibernate.contactmgr.fast_start=true (in hibernate.cfg.xml or as system
+ *    property) hbm2ddl and the JDBC metadata lookup are skipped. The schema is only
+ *    updated when the mapping changed since the last run (see schema.SchemaMigrator)
+ * 3. `Application migrate` updates the schema and search index and exits, e.g. as a
+ *    deployment step before starting in fast start mode
+ *
  *Entry 9: Builder Design Pattern:
  * 1. Modify the import list: import com.teamtreehouse.contactmgr.model.Contact
  *    add .ContactBuilder to eanble ContactBuilder object instantiation
@@ -64,16 +123,69 @@ import java.util.List;
  * NEXT: ENTRY 10: Saving Data with Hibernate GOTO ---> build.gradle dependency{}*/
 
 public class Application {
-    //step 5-2:NOTE: at first buildSessionFactory is not present:
-    private static final SessionFactory sessionFactory = builSessionFactory();
+    //step 5-2:NOTE: at first buildSessionFactory is not present;
+    //34-1: built the first time getSessionFactory() is called (see ENTRY 34):
+    private static class SessionFactoryHolder {
+        private static final SessionFactory sessionFactory = builSessionFactory();
+
+        //36-1: change feed on top of the SessionFactory:
+        private static final ChangeFeed changeFeed = new ChangeFeed(sessionFactory);
+    }
+
+    //32-2: search on top of the SessionFactory, its index follows the change feed. Opened
+    //      (and its refresh thread started) the first time search is used:
+    private static class ContactSearchHolder {
+        private static final ContactSearch contactSearch =
+                new ContactSearch(SessionFactoryHolder.sessionFactory, SessionFactoryHolder.changeFeed);
+    }
 
     //Step 5-3: building the buildSessionFactory method:
     private static SessionFactory builSessionFactory(){
+        SessionFactory factory = builSessionFactory(Collections.emptyMap());
+
+        //28-1: metrics and JMX:
+        ContactMetrics.register(factory);
+        return factory;
+    }
+
+    //33-1: same as above with extra settings on top (e.g. the url of a shard):
+    public static SessionFactory builSessionFactory(Map<String, String> settings){
         //step 5-4: configure() by default refer to hibernate.cfg.xml:
-        final ServiceRegistry registry = new StandardServiceRegistryBuilder()
-                .configure().build();
+        final StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder()
+                .configure();
+
+        //23-1: hibernate.* system properties win over hibernate.cfg.xml (e.g. benchmarks
+        //      pointing the connection url to a fresh H2 instance):
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hibernate.")) {
+                builder.applySetting(name, System.getProperty(name));
+            }
+        }
+        //33-1: and the given settings win over both:
+        builder.applySettings(settings);
+        //34-2: fast start skips hbm2ddl and the JDBC metadata lookup:
+        boolean fastStart = SchemaMigrator.isFastStart(builder.getSettings());
+        if (fastStart) {
+            builder.applySettings(SchemaMigrator.FAST_START_SETTINGS);
+        }
+        final ServiceRegistry registry = builder.build();
         //step 5-5: building metadata based on hibernate.cfg.xml:
-        return new MetadataSources(registry).buildMetadata().buildSessionFactory();
+        Metadata metadata = new MetadataSources(registry).buildMetadata();
+        SessionFactory factory = metadata.buildSessionFactory();
+
+        //32-1: drops H2's full-text index; 34-3: only when the schema changed in fast start:
+        SchemaMigrator.ensureSchema(metadata, factory, fastStart);
+        return factory;
+    }
+
+    //34-4: update the schema and the search index, then stop:
+    public static void migrate(){
+        SessionFactory factory = builSessionFactory(Collections.singletonMap(SchemaMigrator.FAST_START, "false"));
+        try (ContactSearch search = new ContactSearch(factory, new ChangeFeed(factory))) {
+            search.refresh();
+        } finally {
+            factory.close();
+        }
     }
 
     //ENTRY 6; ENTRY 16; ENTRY 18
@@ -114,10 +226,17 @@ public class Application {
      *  5.  We stream it and print some information about the update
      *  6.  Using the same logic we use the delete method to delete the latest update
      *      and put some notes about it.
+     *  NOTE: since ENTRY 25 the update and delete use updateFields() and deleteById()
+     *      which need one round trip each and no findContactById() before them
      * */
 
     //step 3-3
     public static void main(String[] args) {
+        //34-4: java ...Application migrate
+        if (args.length > 0 && "migrate".equals(args[0])) {
+            migrate();
+            return;
+        }
 
         //6-3: instantiating Contact Object using Builder pattern:
         Contact contact = new ContactBuilder("Moo", "Mee")
@@ -134,13 +253,12 @@ public class Application {
         //16-3: stream the query fetched the POJO:
         fetchAllContacts().stream().forEach(System.out::println);
 
-        //18-3: selecting contact by id
-        Contact updatedContact = findContactById(id);
+        //18-3: selecting contact by id; 25-5: not needed anymore, updateFields() and
+        //      deleteById() below work without loading the contact first
 
-        //18-4: updating the last data
+        //18-4: updating the last data; 25-5: only the firstName column is written
         System.out.printf("%n%n updating the last data.....%n");
-        updatedContact.setFirstName("John");
-        update(updatedContact);
+        updateFields(id, Collections.singletonMap("firstName", "John"));
 
         //18-5: we stream the latest update
         System.out.printf("%n update finished, here is the results:%n");
@@ -148,7 +266,7 @@ public class Application {
 
         //18-6: now for deletion for the latest data
         System.out.printf("%n%n now we delete the latest update....%n");
-        delete(updatedContact);
+        deleteById(id);
         System.out.printf("%n here is the latest database after deletion...%n");
         fetchAllContacts().stream().forEach(System.out::println);
     }
@@ -194,8 +312,11 @@ public class Application {
     //11-1: coding save(Contact) method; 13-3: modify the save(Contact) to return int id:
 
     public static int save(Contact contact){
+        //28-2: start timing
+        long start = ContactMetrics.start();
+
         //11-3: Opening a session
-        Session session = sessionFactory.openSession();
+        Session session = getSessionFactory().openSession();
 
         //11-4: Begin the transaction:
         session.beginTransaction();
@@ -208,16 +329,94 @@ public class Application {
 
         //11-7: close the session
         session.close();
+        ContactMetrics.record(Operation.SAVE, start);
 
         //13-5: return the int id:
         return id;
     }
 
+    //ENTRY 19
+    /** ENTRY 19: Batched Bulk Insert
+     * save(Contact) pays one session, one transaction and one commit for every single row.
+     * For bulk loads we want to write many rows per round trip and per commit:
+     * 1.   saveAll(Collection) and saveAll(Stream) use the hibernate.jdbc.batch_size from
+     *      hibernate.cfg.xml as batch size and commit every BATCHES_PER_TRANSACTION batches
+     * 2.   One session is opened for the whole load and its JDBC batch size is set
+     * 3.   Each contact is saved, which only queues the INSERT since the pooled sequence
+     *      already gave us the id (see Contact.java id field)
+     * 4.   Every batchSize rows we flush (send the batch) and clear the session so the
+     *      persistence context does not keep growing during the load
+     * 5.   Every batchSize * batchesPerTransaction rows we commit and start a new transaction
+     * 6.   On failure the current chunk is rolled back, NOTE: chunks committed earlier stay
+     *      in the database!
+     * 7.   The generated ids are returned in the same order as the contacts
+     * */
+
+    //19-1: number of JDBC batches written per transaction:
+    private static final int BATCHES_PER_TRANSACTION = 20;
+
+    public static List<Integer> saveAll(Collection<Contact> contacts){
+        return saveAll(contacts.stream());
+    }
+
+    public static List<Integer> saveAll(Stream<Contact> contacts){
+        int batchSize = Math.max(1, getSessionFactory().getSessionFactoryOptions().getJdbcBatchSize());
+        return saveAll(contacts, batchSize, BATCHES_PER_TRANSACTION);
+    }
+
+    public static List<Integer> saveAll(Stream<Contact> contacts, int batchSize, int batchesPerTransaction){
+        if (batchSize < 1 || batchesPerTransaction < 1) {
+            throw new IllegalArgumentException("batchSize and batchesPerTransaction must be positive");
+        }
+        int chunkSize = batchSize * batchesPerTransaction;
+        List<Integer> ids = new ArrayList<>();
+
+        //19-2: one session for the whole load:
+        Session session = getSessionFactory().openSession();
+        try {
+            session.setJdbcBatchSize(batchSize);
+            session.beginTransaction();
+
+            Iterator<Contact> iterator = contacts.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                //19-3: queue the insert:
+                ids.add((int) session.save(iterator.next()));
+                count++;
+
+                //19-4: send the batch and empty the persistence context:
+                if (count % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+
+                //19-5: commit the chunk:
+                if (count % chunkSize == 0) {
+                    session.getTransaction().commit();
+                    session.beginTransaction();
+                }
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            //19-6: roll back the current chunk only:
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+
+        //19-7: return the generated ids:
+        return ids;
+    }
+
     //ENTRY 15
     /** ENTRY 15: Fetching Data with Hibernate(2:00)
      *  1.  Now we will make the method that specifically made to Fetch Data (all data that is)
      *      from the database. The method declaration required it to return a List of Contacts POJO.
      *      NOTE: it is provate because we will call it from inside Application.java
+     *      (23-2: it is public now, the benchmarks call it too)
      *  2.  Since we are using Hibernate 5.2.x we will using the latest code to Fetch data into a List
      *      many of the deprecated code still used in the course so maybe the explanation around this
      *      latest code is somewhat thin
@@ -236,10 +435,13 @@ public class Application {
      *      query.
      *  */
 
-    //15-1: Fetching Data with Hibernate:
-    private static List<Contact> fetchAllContacts(){
+    //15-1: Fetching Data with Hibernate; 23-2: public:
+    public static List<Contact> fetchAllContacts(){
+        //28-2: start timing
+        long start = ContactMetrics.start();
+
         //15-3: Opening a session
-        Session session = sessionFactory.openSession();
+        Session session = getSessionFactory().openSession();
 
         //15-4: determine the criteria:
         CriteriaBuilder builder = session.getCriteriaBuilder();
@@ -250,14 +452,144 @@ public class Application {
         //15-6: populate the criteria query with specied POJO:
         criteria.from(Contact.class);
 
-        //15-7: fetch all POJO from query to form a List:
-        List<Contact> contacts = session.createQuery(criteria).getResultList();
+        //15-7: fetch all POJO from query to form a List; 21-2: not cacheable, see ENTRY 21:
+        List<Contact> contacts = session.createQuery(criteria)
+                .getResultList();
 
         //15-8: close the session and return the List:
         session.close();
+        ContactMetrics.record(Operation.FETCH, start);
+        return contacts;
+    }
+
+    //ENTRY 20
+    /** ENTRY 20: Streaming Reads
+     * fetchAllContacts() loads every row into one List and keeps each entity managed inside
+     * the session until it is closed, so memory grows with the table. For big tables:
+     * 1.   streamAllContacts(Consumer) hands contacts one by one to the consumer. It uses a
+     *      StatelessSession which has no persistence context at all, so nothing has to be
+     *      detached: each Contact can be garbage collected as soon as the consumer is done
+     * 2.   The query is scrolled with a FORWARD_ONLY cursor, the driver only holds
+     *      hibernate.jdbc.fetch_size rows at a time
+     * 3.   Rows are read in id order so the result is deterministic
+     * 4.   The cursor and the session are always closed, even if the consumer throws
+     * 5.   streamContacts() gives the same rows as a java.util.stream.Stream. The caller MUST
+     *      close it (try-with-resources) since closing the stream closes the cursor and the
+     *      session
+     * 6.   fetchPage(afterId, limit) is keyset pagination for UI callers: it returns the next
+     *      limit contacts with an id bigger than afterId. Pass the id of the last contact of
+     *      a page to get the next one, start with 0. Unlike OFFSET it costs the same on the
+     *      last page as on the first because it seeks on the primary key index
+     * */
+
+    //20-1: stream every contact to a consumer:
+    public static void streamAllContacts(Consumer<Contact> consumer){
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        //20-4: always close cursor and session, also when the query fails:
+        try {
+            //20-2: forward only cursor:
+            ScrollableResults results = session
+                    .createQuery("from Contact c order by c.id", Contact.class)
+                    .setFetchSize(fetchSize())
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    consumer.accept((Contact) results.get(0));
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    //20-5: closeable Stream of every contact:
+    public static Stream<Contact> streamContacts(){
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        try {
+            return session.createQuery("from Contact c order by c.id", Contact.class)
+                    .setFetchSize(fetchSize())
+                    .setReadOnly(true)
+                    .stream()
+                    .onClose(session::close);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    //20-6: keyset pagination:
+    public static List<Contact> fetchPage(int afterId, int limit){
+        Session session = getSessionFactory().openSession();
+        session.setDefaultReadOnly(true);
+
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = builder.createQuery(Contact.class);
+        Root<Contact> root = criteria.from(Contact.class);
+        criteria.where(builder.greaterThan(root.get("id"), afterId))
+                .orderBy(builder.asc(root.get("id")));
+
+        List<Contact> contacts = session.createQuery(criteria)
+                .setMaxResults(limit)
+                .setCacheable(true)
+                .setCacheRegion(CONTACT_QUERY_REGION)
+                .getResultList();
+        session.close();
         return contacts;
     }
 
+    //ENTRY 21
+    /** ENTRY 21: Second-Level Cache
+     * findContactById() used to hit H2 for every call, even for the same id. The cache is
+     * opt-in: hibernate.cfg.xml leaves it off, turn it on with the system properties
+     * hibernate.cache.use_second_level_cache=true and hibernate.cache.use_query_cache=true
+     * (see step 23-1). Then:
+     * 1.   Contact is @Cacheable so session.get() first looks into the in-process Ehcache
+     *      region for Contact (see hibernate.cfg.xml and ehcache.xml)
+     * 2.   Bounded Contact queries (a page, a limit or a lookup) are marked
+     *      setCacheable(true) and stored in the CONTACT_QUERY_REGION. Every future finder
+     *      query with a bounded result should do the same. Hibernate throws the cached
+     *      results away whenever the Contact table is written, and the READ_WRITE strategy
+     *      updates or evicts the cached entity on update() and delete()
+     * 3.   cacheStatistics() returns hit, miss, put and eviction counters of every region
+     *      so we can size them
+     * NOTE: fetchAllContacts() is not cacheable. The query cache only keeps the ids of the
+     *      result, so once the Contact region evicted some of them a cache hit loads those
+     *      one by one, which is slower than running the query again
+     * */
+
+    //21-1: cache region shared by all Contact queries:
+    public static final String CONTACT_QUERY_REGION = "contact-queries";
+
+    //21-3: counters of every cache region:
+    public static List<CacheStats> cacheStatistics(){
+        List<CacheStats> stats = new ArrayList<>();
+        CacheManager cacheManager = CacheManager.getInstance();
+        for (String name : cacheManager.getCacheNames()) {
+            stats.add(CacheStats.of(cacheManager.getEhcache(name)));
+        }
+        return stats;
+    }
+
+    //ENTRY 22
+    /** ENTRY 22: Connection Pool
+     * Every openSession() above takes its JDBC connection from the HikariCP pool configured
+     * in hibernate.cfg.xml (see pool.HikariConnectionProvider). poolMetrics() returns the
+     * active, idle and pending connections and the acquire time percentiles of the pool.
+     * */
+
+    //22-1: pool metrics:
+    public static List<PoolMetrics.Snapshot> poolMetrics(){
+        return PoolMetrics.snapshotAll();
+    }
+
+    private static int fetchSize(){
+        Integer fetchSize = getSessionFactory().getSessionFactoryOptions().getJdbcFetchSize();
+        return fetchSize == null ? 1000 : fetchSize;
+    }
+
     //Entry 17
     /** Entry 17: Updating and Deleting Data
      * 1.   if we want to update and delete data we need to be selective on pointing
@@ -279,36 +611,500 @@ public class Application {
      *  NEXT: ENTRY 18: Updating and Deleting Data GOTO: Application.java main method.
      * */
 
-    //17-1: creating method to findContactById :
-    private static Contact findContactById(int id){
+    //17-1: creating method to findContactById; 23-2: public:
+    public static Contact findContactById(int id){
+        //28-2: start timing
+        long start = ContactMetrics.start();
+
         //17-2: opening a session to database:
-        Session session = sessionFactory.openSession();
+        Session session = getSessionFactory().openSession();
 
         //17-3: fetch selected data
         Contact contact = session.get(Contact.class, id);
 
         //17-4: Session close and return Contact
         session.close();
+        ContactMetrics.record(Operation.FIND, start);
         return contact;
     }
 
-    //17-6: creating update method:
-    private static void update(Contact contact){
-        Session session = sessionFactory.openSession();
-        session.beginTransaction();
+    //17-6: creating update method; 23-2: public; 37-1: fails if the contact is outdated:
+    public static void update(Contact contact){
+        long start = ContactMetrics.start();
+        Session session = getSessionFactory().openSession();
+        try {
+            session.beginTransaction();
 
-        //17-5: for update
-        session.update(contact);
-        session.getTransaction().commit();
+            //17-5: for update
+            session.update(contact);
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            rollbackAndCount(session, e, Operation.UPDATE);
+            throw e;
+        } finally {
+            session.close();
+        }
+        ContactMetrics.record(Operation.UPDATE, start);
+    }
+
+    //17-7: delete method; 23-2: public; 37-1: fails if the contact is outdated:
+    public static void delete(Contact contact){
+        long start = ContactMetrics.start();
+        Session session = getSessionFactory().openSession();
+        try {
+            session.beginTransaction();
+            session.delete(contact);
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            rollbackAndCount(session, e, Operation.DELETE);
+            throw e;
+        } finally {
+            session.close();
+        }
+        ContactMetrics.record(Operation.DELETE, start);
+    }
+
+    //ENTRY 24
+    /** ENTRY 24: Finders
+     * Callers search contacts by email, phone or last name. Instead of filtering
+     * fetchAllContacts() in Java we let H2 use an index (see @Table in Contact.java,
+     * hbm2ddl creates them):
+     * 1.   findByEmail() runs the named query Contact.FIND_BY_EMAIL on the email index.
+     *      Emails are not unique (imports bring duplicates, see ENTRY 35), so it returns the
+     *      oldest contact with that email, or null if nobody has it. With the cache on the
+     *      result is kept in the query cache and the contact in the second-level cache, so
+     *      a repeated lookup does not touch the database
+     * 2.   findByPhone() uses the phone index, the result is stored in the query cache
+     * 3.   findByLastNamePrefix() is a LIKE 'prefix%' on the last name index sorted by last
+     *      name. % and _ typed by the user are escaped so they match literally. Only the
+     *      first limit contacts are returned
+     * */
+
+    //24-1: lookup by email:
+    public static Contact findByEmail(String email){
+        Session session = getSessionFactory().openSession();
+        Contact contact = session.createNamedQuery(Contact.FIND_BY_EMAIL, Contact.class)
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .uniqueResult();
         session.close();
+        return contact;
     }
 
-    //17-7: delete method:
-    private static void delete(Contact contact){
-        Session session = sessionFactory.openSession();
-        session.beginTransaction();
-        session.delete(contact);
-        session.getTransaction().commit();
+    //24-2: lookup by phone:
+    public static List<Contact> findByPhone(long phone){
+        Session session = getSessionFactory().openSession();
+
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = builder.createQuery(Contact.class);
+        Root<Contact> root = criteria.from(Contact.class);
+        criteria.where(builder.equal(root.get("phone"), phone));
+
+        List<Contact> contacts = session.createQuery(criteria)
+                .setCacheable(true)
+                .setCacheRegion(CONTACT_QUERY_REGION)
+                .getResultList();
+        session.close();
+        return contacts;
+    }
+
+    //24-3: lookup by the beginning of the last name:
+    public static List<Contact> findByLastNamePrefix(String prefix, int limit){
+        Session session = getSessionFactory().openSession();
+
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = builder.createQuery(Contact.class);
+        Root<Contact> root = criteria.from(Contact.class);
+        String pattern = prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        criteria.where(builder.like(root.get("lastName"), pattern, '\\'))
+                .orderBy(builder.asc(root.get("lastName")), builder.asc(root.get("id")));
+
+        List<Contact> contacts = session.createQuery(criteria)
+                .setMaxResults(limit)
+                .setCacheable(true)
+                .setCacheRegion(CONTACT_QUERY_REGION)
+                .getResultList();
+        session.close();
+        return contacts;
+    }
+
+    //ENTRY 25
+    /** ENTRY 25: Partial Updates and Delete by Id
+     * update(Contact) writes every column and delete(Contact) needs a loaded contact, so a
+     * change costs a findContactById() round trip plus a full row UPDATE. These methods run
+     * exactly one statement and never load the contact:
+     * 1.   updateFields(id, fields) sends UPDATE Contact SET <only the given fields> WHERE
+     *      id = ?. The keys are Contact field names, e.g. "firstName". Unknown fields, the id
+     *      and values of the wrong type are refused with IllegalArgumentException
+     * 2.   deleteById(id) sends DELETE FROM Contact WHERE id = ?
+     * 3.   deleteWhere(condition) sends one DELETE for every contact matching the condition,
+     *      e.g. deleteWhere((cb, contact) -> cb.like(contact.get("email"), "%@old.com"))
+     * 4.   All of them return the number of rows changed (0 if the id does not exist). They
+     *      count in metrics() as UPDATE and DELETE like update() and delete()
+     * NOTE: Hibernate evicts the Contact regions of the second-level cache after these bulk
+     *      statements since it cannot know which cached contacts changed
+     * */
+
+    //25-1: partial update:
+    public static int updateFields(int id, Map<String, Object> fields){
+        if (fields.isEmpty()) {
+            return 0;
+        }
+        long start = ContactMetrics.start();
+        Session session = getSessionFactory().openSession();
+        int updated;
+        try {
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaUpdate<Contact> update = builder.createCriteriaUpdate(Contact.class);
+            Root<Contact> root = update.from(Contact.class);
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                update.set(updatableAttribute(field.getKey(), field.getValue()), field.getValue());
+            }
+            //37-2: bump the version so copies loaded before are outdated:
+            Path<Integer> version = root.get("version");
+            update.set(version, builder.sum(version, 1));
+            update.where(builder.equal(root.get("id"), id));
+
+            session.beginTransaction();
+            updated = session.createQuery(update).executeUpdate();
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            rollbackAndCount(session, e, Operation.UPDATE);
+            throw e;
+        } finally {
+            session.close();
+        }
+        ContactMetrics.record(Operation.UPDATE, start);
+        return updated;
+    }
+
+    //25-1: check the field name and the value type:
+    @SuppressWarnings("unchecked")
+    private static SingularAttribute<Contact, Object> updatableAttribute(String name, Object value){
+        SingularAttribute<? super Contact, ?> attribute =
+                getSessionFactory().getMetamodel().entity(Contact.class).getSingularAttribute(name);
+        if (attribute.isId()) {
+            throw new IllegalArgumentException("The id of a contact cannot be updated");
+        }
+        if (attribute.isVersion()) {
+            throw new IllegalArgumentException("The version of a contact is managed by Hibernate");
+        }
+        //ENTRY 36: changeVersion is written by the database only:
+        EntityPersister persister = getSessionFactory().unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(Contact.class);
+        if (!persister.getPropertyUpdateability()[persister.getEntityMetamodel().getPropertyIndex(name)]) {
+            throw new IllegalArgumentException(name + " of a contact cannot be updated");
+        }
+        if (value != null && !attribute.getJavaType().isInstance(value)) {
+            throw new IllegalArgumentException(String.format("%s must be a %s but was a %s",
+                    name, attribute.getJavaType().getSimpleName(), value.getClass().getSimpleName()));
+        }
+        return (SingularAttribute<Contact, Object>) attribute;
+    }
+
+    //25-2: delete without loading:
+    public static int deleteById(int id){
+        return deleteWhere((builder, contact) -> builder.equal(contact.get("id"), id));
+    }
+
+    //25-3: bulk delete:
+    public static int deleteWhere(BiFunction<CriteriaBuilder, Root<Contact>, Predicate> condition){
+        long start = ContactMetrics.start();
+        Session session = getSessionFactory().openSession();
+        int deleted;
+        try {
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaDelete<Contact> delete = builder.createCriteriaDelete(Contact.class);
+            Root<Contact> root = delete.from(Contact.class);
+            delete.where(condition.apply(builder, root));
+
+            session.beginTransaction();
+            deleted = session.createQuery(delete).executeUpdate();
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            rollbackAndCount(session, e, Operation.DELETE);
+            throw e;
+        } finally {
+            session.close();
+        }
+        ContactMetrics.record(Operation.DELETE, start);
+        return deleted;
+    }
+
+    //ENTRY 26
+    /** ENTRY 26: Unit of Work
+     * Each CRUD method above opens a session and commits on its own, so a workflow of N
+     * steps pays N sessions and N commits. inTransaction() runs a whole workflow at once:
+     * 1.   One session is opened with the JDBC batch size of hibernate.cfg.xml and one
+     *      transaction is started
+     * 2.   The work gets a ContactUnitOfWork to read and write contacts through that session
+     * 3.   When the work returns everything is flushed once and committed once, its result
+     *      is returned
+     * 4.   If the work throws, the transaction is rolled back and nothing is written
+     * 5.   runInTransaction() is the same for work that returns nothing, e.g.
+     *      runInTransaction(work -> work.findByEmail("moo@something.com").setFirstName("Moo"));
+     * */
+
+    //26-1: one session, one transaction, one flush:
+    public static <T> T inTransaction(Function<ContactUnitOfWork, T> work){
+        Session session = getSessionFactory().openSession();
+        try {
+            session.setJdbcBatchSize(Math.max(1, getSessionFactory().getSessionFactoryOptions().getJdbcBatchSize()));
+            session.beginTransaction();
+
+            //26-2: run the work:
+            T result = work.apply(new ContactUnitOfWork(session));
+
+            //26-3: single flush and commit:
+            session.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            //26-4: nothing is written:
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    //26-5: work without a result:
+    public static void runInTransaction(Consumer<ContactUnitOfWork> work){
+        inTransaction(unit -> {
+            work.accept(unit);
+            return null;
+        });
+    }
+
+    //ENTRY 27
+    /** ENTRY 27: Contact Repository
+     * repository.AsyncContactRepository limits how many calls use the database at once to
+     * the size of the connection pool. connectionPoolSize() reads it from the
+     * hibernate.hikari.maximumPoolSize setting (10 is the HikariCP default).
+     * */
+
+    //27-1: size of the connection pool:
+    public static int connectionPoolSize(){
+        Object size = getSessionFactory().getProperties().get(HikariConnectionProvider.CONFIG_PREFIX + "maximumPoolSize");
+        return size == null ? 10 : Integer.parseInt(size.toString());
+    }
+
+    //ENTRY 28
+    /** ENTRY 28: Metrics
+     * save, findContactById, fetchAllContacts, update and delete are timed by
+     * metrics.ContactMetrics (the 28-2 lines). Everything is off until
+     * hibernate.contactmgr.metrics.enabled is true or it is switched on over JMX:
+     * 1.   metrics() returns count and latency percentiles per operation
+     * 2.   The same numbers, the Hibernate statistics and the slow query log settings are
+     *      on the MXBean com.teamtreehouse.contactmgr:type=ContactMetrics
+     * */
+
+    //28-3: operation metrics:
+    public static Map<String, OperationStats> metrics(){
+        return ContactMetrics.getInstance().snapshot();
+    }
+
+    //ENTRY 29
+    /** ENTRY 29: Bulk Import
+     * Tools outside of this class, like importer.ContactImporter, work directly with the
+     * SessionFactory (e.g. to open a StatelessSession). getSessionFactory() hands out the
+     * one built from hibernate.cfg.xml so there is still only one per application.
+     * */
+
+    //29-1: the shared SessionFactory:
+    public static SessionFactory getSessionFactory(){
+        return SessionFactoryHolder.sessionFactory;
+    }
+
+    //ENTRY 31
+    /** ENTRY 31: Contact Summaries
+     * Listing screens only show name and email, but fetchAllContacts() and fetchPage()
+     * return full managed Contacts with a dirty checking snapshot each. For listings:
+     * 1.   listSummaries(afterId, limit) selects only id, firstName, lastName and email
+     *      into ContactSummary objects (a constructor expression). They are plain objects,
+     *      not entities, so the session does not track them. Paging works like fetchPage():
+     *      pass the id of the last summary to get the next page, start with 0
+     * 2.   streamSummaries(consumer) hands every summary of the table to the consumer
+     *      through a forward only cursor in a StatelessSession, like streamAllContacts()
+     * */
+
+    //31-1: a page of summaries:
+    public static List<ContactSummary> listSummaries(int afterId, int limit){
+        Session session = getSessionFactory().openSession();
+
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        CriteriaQuery<ContactSummary> criteria = builder.createQuery(ContactSummary.class);
+        Root<Contact> root = criteria.from(Contact.class);
+        criteria.select(builder.construct(ContactSummary.class,
+                        root.get("id"), root.get("firstName"), root.get("lastName"), root.get("email")))
+                .where(builder.greaterThan(root.get("id"), afterId))
+                .orderBy(builder.asc(root.get("id")));
+
+        List<ContactSummary> summaries = session.createQuery(criteria)
+                .setMaxResults(limit)
+                .getResultList();
         session.close();
+        return summaries;
+    }
+
+    //31-2: every summary:
+    public static void streamSummaries(Consumer<ContactSummary> consumer){
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        try {
+            ScrollableResults results = session
+                    .createQuery("select new com.teamtreehouse.contactmgr.model.ContactSummary("
+                            + "c.id, c.firstName, c.lastName, c.email) from Contact c order by c.id", ContactSummary.class)
+                    .setFetchSize(fetchSize())
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    consumer.accept((ContactSummary) results.get(0));
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    //ENTRY 32
+    /** ENTRY 32: Search
+     * Users type part of a name or email and expect results right away. A LIKE '%x%' would
+     * scan the whole table, so search.ContactSearch keeps two indexes in sync with every
+     * save, update and delete (fed by the change feed of ENTRY 36):
+     * 1.   search(text, offset, limit) uses a Lucene index stored next to the database.
+     *      Every typed word must match a word of the first name, last name or email, or
+     *      the beginning of one. Results are ranked best first, offset and limit page
+     *      through them
+     * 2.   suggest(prefix, limit) is for type-ahead boxes and walks the words of the same
+     *      index. Contacts with a word equal to the prefix come first, then the other
+     *      completions in alphabetical order
+     * 3.   The index is brought up to date in the background, so a change shows up in
+     *      search a moment after its commit. refreshSearch() waits until every change
+     *      committed before the call is searchable, e.g. after a bulk import
+     * */
+
+    //32-3: ranked full-text search:
+    public static List<ContactSummary> search(String text, int offset, int limit){
+        return ContactSearchHolder.contactSearch.search(text, offset, limit);
+    }
+
+    //32-4: type-ahead:
+    public static List<ContactSummary> suggest(String prefix, int limit){
+        return ContactSearchHolder.contactSearch.suggest(prefix, limit);
+    }
+
+    //32-5: read your own writes:
+    public static void refreshSearch(){
+        ContactSearchHolder.contactSearch.refresh();
+    }
+
+    //ENTRY 36
+    /** ENTRY 36: Change Feed
+     * Downstream systems used to call fetchAllContacts() and diff the whole table. Every
+     * insert and update now stamps the contact with a growing change version and every
+     * delete leaves a tombstone (both done by the database, see feed.ChangeFeed):
+     * 1.   changesSince(version, limit) returns what was inserted, updated or deleted
+     *      after the given version, oldest first. Start with 0 and pass the version of the
+     *      last returned change as the next checkpoint until nothing comes back
+     * 2.   Changes of transactions that are still open hold back everything after them,
+     *      so a checkpoint never passes a change that commits later
+     * */
+
+    //36-2: incremental sync:
+    public static List<ContactChange> changesSince(long version, int limit){
+        return SessionFactoryHolder.changeFeed.changesSince(version, limit);
+    }
+
+    //ENTRY 37
+    /** ENTRY 37: Optimistic Locking
+     * update(Contact) used to overwrite the row with whatever the caller had, so of two
+     * editors the last one silently won. Contact has a @Version now:
+     * 1.   update(Contact) and delete(Contact) fail with an OptimisticLockException (or
+     *      Hibernate's StaleStateException) when someone else changed the contact since it
+     *      was loaded. Nothing is written, the caller decides what to do
+     * 2.   updateFields() increments the version too
+     * 3.   updateWithRetry(id, change) loads the contact, applies the change and commits.
+     *      When another writer was faster it waits (see RetryPolicy), loads the contact
+     *      again from the database and applies the change again to the fresh copy, until
+     *      it succeeds or the policy gives up and the last conflict is thrown. So the change
+     *      should be written as "what to do" (e.g. c -> c.setPhone(newPhone)), it can run
+     *      more than once. Returns the updated contact, null if it does not exist
+     * 4.   Conflicts and retries are counted per operation in metrics()
+     * 5.   A thread interrupted while it waits for the next try stops retrying. The interrupt
+     *      flag stays set and an IllegalStateException with the InterruptedException as cause
+     *      is thrown, so it is not taken for a conflict
+     * NOTE: no row is locked while the contact is edited, concurrent editors of different
+     *      contacts never wait for each other
+     * */
+
+    //37-3: update with retries:
+    public static Contact updateWithRetry(int id, Consumer<Contact> change){
+        return updateWithRetry(id, change, RetryPolicy.DEFAULT);
+    }
+
+    public static Contact updateWithRetry(int id, Consumer<Contact> change, RetryPolicy policy){
+        long start = ContactMetrics.start();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Session session = getSessionFactory().openSession();
+                try {
+                    if (attempt > 1) {
+                        //the cached copy may be the outdated one:
+                        session.setCacheMode(CacheMode.REFRESH);
+                    }
+                    session.beginTransaction();
+                    Contact contact = session.get(Contact.class, id);
+                    if (contact == null) {
+                        session.getTransaction().rollback();
+                        return null;
+                    }
+                    change.accept(contact);
+                    session.getTransaction().commit();
+                    return contact;
+                } catch (RuntimeException e) {
+                    rollbackAndCount(session, e, Operation.UPDATE);
+                    if (!isConflict(e) || attempt >= policy.getMaxAttempts()) {
+                        throw e;
+                    }
+                } finally {
+                    session.close();
+                }
+                ContactMetrics.retry(Operation.UPDATE);
+                try {
+                    policy.backoff(attempt);
+                } catch (InterruptedException e) {
+                    //37-5: give up, the caller still sees the interrupt:
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while retrying the update of contact " + id, e);
+                }
+            }
+        } finally {
+            ContactMetrics.record(Operation.UPDATE, start);
+        }
+    }
+
+    //37-4: roll back and count the conflict:
+    private static void rollbackAndCount(Session session, RuntimeException e, Operation operation){
+        if (session.getTransaction().isActive()) {
+            session.getTransaction().rollback();
+        }
+        if (isConflict(e)) {
+            ContactMetrics.conflict(operation);
+        }
+    }
+
+    private static boolean isConflict(Throwable e){
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,61 @@
+package com.teamtreehouse.contactmgr;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.Session;
+
+//ENTRY 26
+/**Entry 26: Unit of Work
+ * The CRUD methods of Application each open their own session and commit on their own.
+ * A ContactUnitOfWork is handed out by Application.inTransaction() and runs everything
+ * in ONE session and ONE transaction:
+ * 1. save(), findContactById(), findByEmail(), update() and delete() work like the ones
+ *    in Application but share the session of the unit
+ * 2. Contacts read through the unit are managed: changing them with a setter is enough,
+ *    the change is written when the unit commits. update() is only needed for contacts
+ *    that came from outside the unit (it merges them in and returns the managed copy)
+ * 3. Writes are collected and flushed once at commit, in JDBC batches with ordered
+ *    inserts and updates (see hibernate.cfg.xml ENTRY 26). A query run inside the unit
+ *    still sees the pending writes because Hibernate flushes before it if needed
+ * 4. getSession() gives the Hibernate session for anything not covered here
+ * NOTE: do not keep a unit of work after inTransaction() returns, its session is closed*/
+
+public class ContactUnitOfWork {
+    private final Session session;
+
+    ContactUnitOfWork(Session session){
+        this.session = session;
+    }
+
+    //26-1: the CRUD operations on the shared session:
+    public int save(Contact contact){
+        return (int) session.save(contact);
+    }
+
+    public Contact findContactById(int id){
+        return session.get(Contact.class, id);
+    }
+
+    public Contact findByEmail(String email){
+        return session.createNamedQuery(Contact.FIND_BY_EMAIL, Contact.class)
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    //26-2: merge contacts from outside of the unit:
+    public Contact update(Contact contact){
+        if (session.contains(contact)) {
+            return contact;
+        }
+        return (Contact) session.merge(contact);
+    }
+
+    public void delete(Contact contact){
+        session.delete(session.contains(contact) ? contact : session.merge(contact));
+    }
+
+    //26-4: the underlying session:
+    public Session getSession(){
+        return session;
+    }
+}
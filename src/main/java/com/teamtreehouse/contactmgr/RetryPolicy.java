@@ -0,0 +1,121 @@
+package com.teamtreehouse.contactmgr;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//ENTRY 37
+/**Entry 37: Optimistic Locking
+ * How often and how patiently Application.updateWithRetry() tries again after another
+ * writer changed the same contact first:
+ * 1. maxAttempts is the number of tries in total, 1 means no retry
+ * 2. The pause before retry n is initialBackoff * multiplier^(n-1), capped at maxBackoff
+ * 3. jitter takes a random part of the pause away (0.5: between 50% and 100% of it), so
+ *    writers that collided once do not collide again at the same moment
+ * 4. An interrupt ends the pause at once with an InterruptedException
+ * Usage:
+ *    RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+ *            .withMaxAttempts(5)
+ *            .withInitialBackoff(2, TimeUnit.MILLISECONDS)
+ *            .build();
+ * */
+
+public final class RetryPolicy {
+    public static final RetryPolicy DEFAULT = new RetryPolicyBuilder().build();
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final double jitter;
+
+    private RetryPolicy(RetryPolicyBuilder builder){
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoffNanos;
+        this.maxBackoffNanos = builder.maxBackoffNanos;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+    }
+
+    //37-2: pause before the retry that follows the given failed attempt:
+    public long backoffNanos(int failedAttempt){
+        double backoff = initialBackoffNanos * Math.pow(multiplier, failedAttempt - 1);
+        backoff = Math.min(backoff, maxBackoffNanos);
+        //37-3: jitter:
+        return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    //37-4: stops waiting as soon as the thread is interrupted:
+    void backoff(int failedAttempt) throws InterruptedException {
+        long nanos = backoffNanos(failedAttempt);
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", initialBackoffNanos=" + initialBackoffNanos +
+                ", maxBackoffNanos=" + maxBackoffNanos +
+                ", multiplier=" + multiplier +
+                ", jitter=" + jitter +
+                '}';
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public static class RetryPolicyBuilder {
+        private int maxAttempts = 10;
+        private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        private long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private double multiplier = 2;
+        private double jitter = 0.5;
+
+        public RetryPolicyBuilder withMaxAttempts(int maxAttempts){
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public RetryPolicyBuilder withInitialBackoff(long backoff, TimeUnit unit){
+            this.initialBackoffNanos = unit.toNanos(backoff);
+            return this;
+        }
+
+        public RetryPolicyBuilder withMaxBackoff(long backoff, TimeUnit unit){
+            this.maxBackoffNanos = unit.toNanos(backoff);
+            return this;
+        }
+
+        public RetryPolicyBuilder withMultiplier(double multiplier){
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public RetryPolicyBuilder withJitter(double jitter){
+            this.jitter = jitter;
+            return this;
+        }
+
+        public RetryPolicy build(){
+            if (maxAttempts < 1 || initialBackoffNanos < 0 || maxBackoffNanos < initialBackoffNanos || multiplier < 1) {
+                throw new IllegalArgumentException("Invalid retry settings");
+            }
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Jitter must be between 0 and 1");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
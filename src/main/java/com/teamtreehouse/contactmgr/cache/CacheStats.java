@@ -0,0 +1,85 @@
+package com.teamtreehouse.contactmgr.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.statistics.StatisticsGateway;
+
+//ENTRY 21
+/**Entry 21: Second-Level Cache
+ * Snapshot of the counters of one cache region, used to size the regions in ehcache.xml
+ * 1. hits and misses tell how often a lookup was served without touching H2
+ * 2. puts count entries loaded into the region
+ * 3. evictions count entries thrown out because the region was full (LRU) plus the ones
+ *    that expired (TTL). If this keeps growing while the hit ratio is low the region
+ *    is too small
+ * 4. size is the number of entries currently in the region
+ * NOTE: the values are copied when the snapshot is made, they do not change afterwards*/
+
+public class CacheStats {
+    private final String region;
+    private final long hits;
+    private final long misses;
+    private final long puts;
+    private final long evictions;
+    private final long size;
+
+    public CacheStats(String region, long hits, long misses, long puts, long evictions, long size){
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    //21-1: take a snapshot of an Ehcache region:
+    public static CacheStats of(Ehcache cache){
+        StatisticsGateway statistics = cache.getStatistics();
+        return new CacheStats(cache.getName(),
+                statistics.cacheHitCount(),
+                statistics.cacheMissCount(),
+                statistics.cachePutCount(),
+                statistics.cacheEvictedCount() + statistics.cacheExpiredCount(),
+                statistics.getSize());
+    }
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "region='" + region + '\'' +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", puts=" + puts +
+                ", evictions=" + evictions +
+                ", size=" + size +
+                '}';
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,82 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+//ENTRY 35
+/**Entry 35: Duplicate Detection
+ * Brings the fields of a contact to one spelling so that duplicates compare equal:
+ * 1. normalizeEmail() trims and lower cases ("Moo@Something.com " is "moo@something.com")
+ * 2. normalizePhone() keeps the last 10 digits, so a leading country code 1 does not
+ *    make two numbers different. 0 and negative numbers are no phone (-1)
+ * 3. normalizeName() lower cases, removes accents (an e with accent is an e) and keeps
+ *    only the letters, of any script: Cyrillic or Chinese names stay as they are
+ * 4. soundex() is the American Soundex code of a normalized name: names that sound alike
+ *    ("Smith", "Smyth", "Smithe") get the same code, which puts them in the same block
+ *    (see DedupEngine). Soundex only knows a..z: other letters after the first one are
+ *    skipped, and names that do not start with a..z (or are empty) give an empty code*/
+
+public class ContactNormalizer {
+    private static final long TEN_DIGITS = 10_000_000_000L;
+    //35-4: codes of a..z, '0' for vowels and h, w, y:
+    private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+    private ContactNormalizer(){}
+
+    //35-1:
+    public static String normalizeEmail(String email){
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    //35-2:
+    public static long normalizePhone(Long phone){
+        if (phone == null || phone <= 0) {
+            return -1;
+        }
+        return phone % TEN_DIGITS;
+    }
+
+    //35-3:
+    public static String normalizeName(String name){
+        if (name == null) {
+            return "";
+        }
+        //accents become separate combining marks, which are not letters:
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder letters = new StringBuilder(decomposed.length());
+        decomposed.codePoints()
+                .filter(Character::isLetter)
+                .map(Character::toLowerCase)
+                .forEach(letters::appendCodePoint);
+        return letters.toString();
+    }
+
+    //35-4: first letter and three digits, e.g. smith -> s530:
+    public static String soundex(String normalizedName){
+        if (normalizedName.isEmpty() || !isAsciiLetter(normalizedName.charAt(0))) {
+            return "";
+        }
+        char[] code = {Character.toUpperCase(normalizedName.charAt(0)), '0', '0', '0'};
+        char last = SOUNDEX_CODES.charAt(normalizedName.charAt(0) - 'a');
+        int length = 1;
+        for (int i = 1; i < normalizedName.length() && length < code.length; i++) {
+            char c = normalizedName.charAt(i);
+            if (!isAsciiLetter(c)) {
+                continue;
+            }
+            char digit = SOUNDEX_CODES.charAt(c - 'a');
+            if (digit != '0' && digit != last) {
+                code[length++] = digit;
+            }
+            //h and w do not separate two equal codes, vowels do:
+            if (c != 'h' && c != 'w') {
+                last = digit;
+            }
+        }
+        return new String(code);
+    }
+
+    private static boolean isAsciiLetter(char c){
+        return c >= 'a' && c <= 'z';
+    }
+}
@@ -0,0 +1,512 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+//ENTRY 35
+/**Entry 35: Duplicate Detection
+ * Finds contacts that are the same person (email in another case, phone with country code,
+ * name spelled differently) without comparing every contact with every other one and
+ * without loading the table into memory:
+ * 1. Partition pass: the table is read once through a forward only cursor. Every contact
+ *    gets blocking keys from its normalized fields (see ContactNormalizer): its email, its
+ *    phone and the Soundex of the last name (the last name itself when it has no Soundex
+ *    code, e.g. a Cyrillic name) plus the first letter of the first name. For
+ *    every key the contact is appended to one of the partition files, picked by the hash
+ *    of the key, so all contacts with the same key end up in the same file
+ * 2. Compare pass: the partition files are processed in parallel, one per thread, so only
+ *    as many partitions are in memory as there are threads. Inside a partition contacts
+ *    are grouped by key (a block) and only contacts of the same block are compared.
+ *    Blocks bigger than maxBlockSize are sorted by name and every contact is only
+ *    compared with the next windowSize ones
+ * 3. Two contacts match when they have the same email, or the same phone and similar
+ *    names, or similar names and similar emails. Names and emails are compared with
+ *    JaroWinkler, similar means at least the threshold (0.9 by default). The name rules
+ *    need a last name on both contacts, two contacts without one are never similar
+ * 4. Matches are joined in a union-find over the row numbers of the partition pass, so
+ *    if a matches b and b matches c all three end up in one MergeCluster. The root is
+ *    always the lowest row number, which is the lowest (oldest) id and the survivor
+ * 5. merge() rewrites the data: for every cluster the empty fields of the survivor are
+ *    filled from the duplicates and the duplicates are deleted, clustersPerTransaction
+ *    clusters per transaction
+ * NOTE: memory is about 8 bytes per contact (id and union-find parent) plus the
+ *    partitions being compared. Use more partitions when single partitions get too big.
+ *    The partition files are deleted when findClusters() returns
+ * Usage:
+ *    DedupEngine engine = new DedupEngine.DedupBuilder(Application.getSessionFactory()).build();
+ *    List<MergeCluster> clusters = engine.findClusters();
+ *    engine.merge(clusters);
+ * */
+
+public class DedupEngine {
+    private static final String EMAIL_KEY = "e";
+    private static final String PHONE_KEY = "p";
+    private static final String NAME_KEY = "n";
+
+    private final SessionFactory sessionFactory;
+    private final int partitions;
+    private final int threads;
+    private final int maxBlockSize;
+    private final int windowSize;
+    private final double threshold;
+    private final int clustersPerTransaction;
+    private final Path workDirectory;
+
+    private DedupEngine(DedupBuilder builder){
+        this.sessionFactory = builder.sessionFactory;
+        this.partitions = builder.partitions;
+        this.threads = builder.threads;
+        this.maxBlockSize = builder.maxBlockSize;
+        this.windowSize = builder.windowSize;
+        this.threshold = builder.threshold;
+        this.clustersPerTransaction = builder.clustersPerTransaction;
+        this.workDirectory = builder.workDirectory;
+    }
+
+    public List<MergeCluster> findClusters() throws IOException {
+        Path directory = Files.createTempDirectory(workDirectory, "contactmgr-dedup");
+        try {
+            IntList ids = partition(directory);
+            UnionFind clusters = new UnionFind(ids.size());
+            compare(directory, clusters);
+            return clusters(ids, clusters);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    //35-1: partition pass, returns the id of every row number:
+    private IntList partition(Path directory) throws IOException {
+        IntList ids = new IntList(1024);
+        DataOutputStream[] out = new DataOutputStream[partitions];
+        StatelessSession session = sessionFactory.openStatelessSession();
+        ScrollableResults results = session
+                .createQuery("select c.id, c.firstName, c.lastName, c.email, c.phone from Contact c order by c.id")
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            for (int i = 0; i < partitions; i++) {
+                out[i] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(partitionFile(directory, i)), 16 * 1024));
+            }
+            while (results.next()) {
+                Object[] row = results.get();
+                int number = ids.size();
+                ids.add((Integer) row[0]);
+                DedupRecord record = new DedupRecord(number,
+                        ContactNormalizer.normalizeName((String) row[1]),
+                        ContactNormalizer.normalizeName((String) row[2]),
+                        ContactNormalizer.normalizeEmail((String) row[3]),
+                        ContactNormalizer.normalizePhone((Long) row[4]));
+                for (String key : record.blockingKeys()) {
+                    record.write(key, out[Math.floorMod(spread(key.hashCode()), partitions)]);
+                }
+            }
+        } finally {
+            results.close();
+            session.close();
+            for (DataOutputStream stream : out) {
+                if (stream != null) {
+                    stream.close();
+                }
+            }
+        }
+        return ids;
+    }
+
+    //35-2: compare pass, one partition per thread:
+    private void compare(Path directory, UnionFind clusters) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "contact-dedup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<IntList> matches = new ExecutorCompletionService<>(workers);
+            for (int i = 0; i < partitions; i++) {
+                Path file = partitionFile(directory, i);
+                matches.submit(() -> compareBlocks(readBlocks(file)));
+            }
+            //35-4: the union-find is only touched by this thread:
+            for (int i = 0; i < partitions; i++) {
+                IntList pairs = matches.take().get();
+                for (int p = 0; p < pairs.size(); p += 2) {
+                    clusters.union(pairs.get(p), pairs.get(p + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Duplicate detection interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("Duplicate detection failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static Map<String, List<DedupRecord>> readBlocks(Path file){
+        Map<String, List<DedupRecord>> blocks = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (true) {
+                String key;
+                try {
+                    key = in.readUTF();
+                } catch (EOFException end) {
+                    return blocks;
+                }
+                blocks.computeIfAbsent(key, k -> new ArrayList<>()).add(DedupRecord.read(in));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //35-2: pairs of matching row numbers:
+    private IntList compareBlocks(Map<String, List<DedupRecord>> blocks){
+        IntList pairs = new IntList(256);
+        for (Map.Entry<String, List<DedupRecord>> block : blocks.entrySet()) {
+            List<DedupRecord> records = block.getValue();
+            if (records.size() < 2) {
+                continue;
+            }
+            if (block.getKey().startsWith(EMAIL_KEY)) {
+                //same email, no need to compare:
+                for (int i = 1; i < records.size(); i++) {
+                    pairs.add(records.get(0).number);
+                    pairs.add(records.get(i).number);
+                }
+                continue;
+            }
+            int window = records.size();
+            if (records.size() > maxBlockSize) {
+                records.sort(Comparator.comparing((DedupRecord record) -> record.lastName)
+                        .thenComparing(record -> record.firstName));
+                window = windowSize;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                int end = Math.min(records.size(), i + 1 + window);
+                for (int j = i + 1; j < end; j++) {
+                    if (matches(records.get(i), records.get(j))) {
+                        pairs.add(records.get(i).number);
+                        pairs.add(records.get(j).number);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    //35-3: the match rule:
+    private boolean matches(DedupRecord a, DedupRecord b){
+        if (!a.email.isEmpty() && a.email.equals(b.email)) {
+            return true;
+        }
+        if (a.lastName.isEmpty() || b.lastName.isEmpty()) {
+            return false;
+        }
+        double names = JaroWinkler.similarity(a.fullName(), b.fullName());
+        if (names < threshold) {
+            return false;
+        }
+        if (a.phone != -1 && a.phone == b.phone) {
+            return true;
+        }
+        return !a.email.isEmpty() && !b.email.isEmpty()
+                && JaroWinkler.similarity(a.email, b.email) >= threshold;
+    }
+
+    //35-4: clusters of the union-find, ordered by survivor:
+    private static List<MergeCluster> clusters(IntList ids, UnionFind clusters){
+        Map<Integer, List<Integer>> duplicates = new TreeMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            int root = clusters.find(i);
+            if (root != i) {
+                duplicates.computeIfAbsent(root, r -> new ArrayList<>()).add(ids.get(i));
+            }
+        }
+        List<MergeCluster> result = new ArrayList<>(duplicates.size());
+        for (Map.Entry<Integer, List<Integer>> cluster : duplicates.entrySet()) {
+            result.add(new MergeCluster(ids.get(cluster.getKey()), cluster.getValue()));
+        }
+        return result;
+    }
+
+    //35-5: merge the duplicates into the survivors, returns the number of deleted contacts:
+    public int merge(List<MergeCluster> clusters){
+        int deleted = 0;
+        for (int from = 0; from < clusters.size(); from += clustersPerTransaction) {
+            deleted += mergeBatch(clusters.subList(from, Math.min(clusters.size(), from + clustersPerTransaction)));
+        }
+        return deleted;
+    }
+
+    private int mergeBatch(List<MergeCluster> batch){
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            int deleted = 0;
+            List<Contact> survivors = new ArrayList<>(batch.size());
+            List<Contact> merged = new ArrayList<>(batch.size());
+            for (MergeCluster cluster : batch) {
+                Contact survivor = session.get(Contact.class, cluster.getSurvivorId());
+                if (survivor == null) {
+                    continue;
+                }
+                Contact values = new Contact();
+                for (int id : cluster.getDuplicateIds()) {
+                    Contact duplicate = session.get(Contact.class, id);
+                    if (duplicate == null) {
+                        continue;
+                    }
+                    fillEmpty(values, duplicate);
+                    session.delete(duplicate);
+                    deleted++;
+                }
+                survivors.add(survivor);
+                merged.add(values);
+            }
+            //the deletes go first, the survivor may take over the email of a duplicate:
+            session.flush();
+            for (int i = 0; i < survivors.size(); i++) {
+                fillEmpty(survivors.get(i), merged.get(i));
+            }
+            session.getTransaction().commit();
+            return deleted;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void fillEmpty(Contact target, Contact source){
+        if (target.getFirstName() == null) {
+            target.setFirstName(source.getFirstName());
+        }
+        if (target.getLastName() == null) {
+            target.setLastName(source.getLastName());
+        }
+        if (target.getEmail() == null) {
+            target.setEmail(source.getEmail());
+        }
+        if (target.getPhone() == null) {
+            target.setPhone(source.getPhone());
+        }
+    }
+
+    private static Path partitionFile(Path directory, int partition){
+        return directory.resolve("partition-" + partition + ".bin");
+    }
+
+    private static int spread(int hash){
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+
+    //35-1: one contact in a partition file:
+    private static class DedupRecord {
+        private final int number;
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final long phone;
+
+        DedupRecord(int number, String firstName, String lastName, String email, long phone){
+            this.number = number;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.phone = phone;
+        }
+
+        List<String> blockingKeys(){
+            List<String> keys = new ArrayList<>(3);
+            if (!email.isEmpty()) {
+                keys.add(EMAIL_KEY + email);
+            }
+            if (phone != -1) {
+                keys.add(PHONE_KEY + phone);
+            }
+            if (!lastName.isEmpty()) {
+                String soundex = ContactNormalizer.soundex(lastName);
+                keys.add(NAME_KEY + (soundex.isEmpty() ? lastName : soundex)
+                        + (firstName.isEmpty() ? "" : firstName.substring(0, firstName.offsetByCodePoints(0, 1))));
+            }
+            return keys;
+        }
+
+        String fullName(){
+            return firstName + " " + lastName;
+        }
+
+        void write(String key, DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeInt(number);
+            out.writeUTF(firstName);
+            out.writeUTF(lastName);
+            out.writeUTF(email);
+            out.writeLong(phone);
+        }
+
+        static DedupRecord read(DataInputStream in) throws IOException {
+            return new DedupRecord(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+        }
+    }
+
+    //35-4: union-find over row numbers, the lowest row number is always the root:
+    private static class UnionFind {
+        private final int[] parent;
+
+        UnionFind(int size){
+            parent = new int[size];
+            for (int i = 0; i < size; i++) {
+                parent[i] = i;
+            }
+        }
+
+        int find(int i){
+            while (parent[i] != i) {
+                //path halving:
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        void union(int a, int b){
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA < rootB) {
+                parent[rootB] = rootA;
+            } else if (rootB < rootA) {
+                parent[rootA] = rootB;
+            }
+        }
+    }
+
+    //growable int array, a List<Integer> would cost 16 bytes more per row:
+    private static class IntList {
+        private int[] values;
+        private int size;
+
+        IntList(int capacity){
+            values = new int[capacity];
+        }
+
+        void add(int value){
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index){
+            return values[index];
+        }
+
+        int size(){
+            return size;
+        }
+    }
+
+    public static class DedupBuilder {
+        private final SessionFactory sessionFactory;
+        private int partitions = 256;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int maxBlockSize = 1000;
+        private int windowSize = 50;
+        private double threshold = 0.9;
+        private int clustersPerTransaction = 100;
+        private Path workDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        public DedupBuilder(SessionFactory sessionFactory){
+            this.sessionFactory = sessionFactory;
+        }
+
+        public DedupBuilder withPartitions(int partitions){
+            this.partitions = partitions;
+            return this;
+        }
+
+        public DedupBuilder withThreads(int threads){
+            this.threads = threads;
+            return this;
+        }
+
+        public DedupBuilder withMaxBlockSize(int maxBlockSize){
+            this.maxBlockSize = maxBlockSize;
+            return this;
+        }
+
+        public DedupBuilder withWindowSize(int windowSize){
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public DedupBuilder withThreshold(double threshold){
+            this.threshold = threshold;
+            return this;
+        }
+
+        public DedupBuilder withClustersPerTransaction(int clustersPerTransaction){
+            this.clustersPerTransaction = clustersPerTransaction;
+            return this;
+        }
+
+        public DedupBuilder withWorkDirectory(Path workDirectory){
+            this.workDirectory = workDirectory;
+            return this;
+        }
+
+        public DedupEngine build(){
+            if (partitions < 1 || threads < 1 || maxBlockSize < 2 || windowSize < 1 || clustersPerTransaction < 1) {
+                throw new IllegalArgumentException("Dedup settings must be positive");
+            }
+            if (threshold <= 0 || threshold > 1) {
+                throw new IllegalArgumentException("Threshold must be in (0, 1]");
+            }
+            return new DedupEngine(this);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+//ENTRY 35
+/**Entry 35: Duplicate Detection
+ * Jaro-Winkler similarity of two strings, from 0 (nothing in common) to 1 (equal). It is
+ * made for short strings like names and typos: "martha" and "marhta" are 0.96, "dixon"
+ * and "dicksonx" 0.81. Strings with the same beginning score higher (the Winkler part,
+ * up to 4 characters)*/
+
+public class JaroWinkler {
+    private static final double PREFIX_SCALE = 0.1;
+    private static final int MAX_PREFIX = 4;
+
+    private JaroWinkler(){}
+
+    public static double similarity(String a, String b){
+        if (a.equals(b)) {
+            return 1;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+        boolean[] aMatched = new boolean[a.length()];
+        boolean[] bMatched = new boolean[b.length()];
+
+        //35-1: characters equal within the window:
+        int matches = 0;
+        for (int i = 0; i < a.length(); i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(b.length() - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!bMatched[j] && a.charAt(i) == b.charAt(j)) {
+                    aMatched[i] = true;
+                    bMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        //35-2: matched characters in a different order:
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < a.length(); i++) {
+            if (aMatched[i]) {
+                while (!bMatched[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+        double m = matches;
+        double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+
+        //35-3: common prefix bonus:
+        int prefix = 0;
+        while (prefix < MAX_PREFIX && prefix < a.length() && prefix < b.length()
+                && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * PREFIX_SCALE * (1 - jaro);
+    }
+}
@@ -0,0 +1,35 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import java.util.Collections;
+import java.util.List;
+
+//ENTRY 35
+/**Entry 35: Duplicate Detection
+ * Contacts found to be the same person. The survivor is the oldest one (lowest id), the
+ * duplicates are merged into it and deleted by DedupEngine.merge()*/
+
+public final class MergeCluster {
+    private final int survivorId;
+    private final List<Integer> duplicateIds;
+
+    MergeCluster(int survivorId, List<Integer> duplicateIds){
+        this.survivorId = survivorId;
+        this.duplicateIds = Collections.unmodifiableList(duplicateIds);
+    }
+
+    @Override
+    public String toString() {
+        return "MergeCluster{" +
+                "survivorId=" + survivorId +
+                ", duplicateIds=" + duplicateIds +
+                '}';
+    }
+
+    public int getSurvivorId() {
+        return survivorId;
+    }
+
+    public List<Integer> getDuplicateIds() {
+        return duplicateIds;
+    }
+}
@@ -0,0 +1,217 @@
+package com.teamtreehouse.contactmgr.export;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+//ENTRY 30
+/**Entry 30: Streaming Export
+ * Writes the whole contact table to a file or stream without building a List<Contact>:
+ * 1. Only the five columns are selected (a projection), so no Contact entity is created
+ *    per row, and a StatelessSession keeps nothing in a persistence context
+ * 2. The rows are read with a FORWARD_ONLY cursor, hibernate.jdbc.fetch_size rows per
+ *    round trip, in id order
+ * 3. Each row is formatted into ONE StringBuilder and copied into ONE char buffer that
+ *    are reused for every row, then written to a buffered writer. Numbers are appended
+ *    directly, nothing is concatenated with + like Contact.toString() does
+ * 4. export(Path, format, gzip) writes to a file, gzip compressed if asked (add .gz to
+ *    the file name yourself)
+ * 5. Both export methods return the number of rows written
+ * NOTE: export(OutputStream) flushes but does not close the stream, it belongs to the
+ *       caller*/
+
+public class ContactExporter {
+    private static final String QUERY =
+            "select c.id, c.firstName, c.lastName, c.email, c.phone from Contact c order by c.id";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final SessionFactory sessionFactory;
+
+    public ContactExporter(SessionFactory sessionFactory){
+        this.sessionFactory = sessionFactory;
+    }
+
+    //30-4: export to a file:
+    public long export(Path file, ExportFormat format, boolean gzip) throws IOException {
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE)
+                : new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+            return export(out, format);
+        }
+    }
+
+    public long export(OutputStream out, ExportFormat format) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        RowWriter rows = new RowWriter(writer, format);
+        long count = 0;
+
+        //30-1: projection in a stateless session:
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            Integer fetchSize = sessionFactory.getSessionFactoryOptions().getJdbcFetchSize();
+            //30-2: forward only cursor:
+            ScrollableResults results = session.createQuery(QUERY)
+                    .setFetchSize(fetchSize == null ? 1000 : fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                rows.header();
+                while (results.next()) {
+                    rows.row(results.get());
+                    count++;
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+        }
+        writer.flush();
+        //30-5: rows written:
+        return count;
+    }
+
+    //30-3: formats rows into reused buffers:
+    private static class RowWriter {
+        private static final String[] COLUMNS = {"id", "firstName", "lastName", "email", "phone"};
+
+        private final Writer writer;
+        private final ExportFormat format;
+        private final StringBuilder line = new StringBuilder(256);
+        private char[] buffer = new char[256];
+
+        RowWriter(Writer writer, ExportFormat format){
+            this.writer = writer;
+            this.format = format;
+        }
+
+        void header() throws IOException {
+            if (format == ExportFormat.CSV) {
+                line.setLength(0);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(COLUMNS[i]);
+                }
+                line.append('\n');
+                flushLine();
+            }
+        }
+
+        void row(Object[] row) throws IOException {
+            line.setLength(0);
+            if (format == ExportFormat.CSV) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    appendCsv(row[i]);
+                }
+            } else {
+                line.append('{');
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append('"').append(COLUMNS[i]).append("\":");
+                    appendJson(row[i]);
+                }
+                line.append('}');
+            }
+            line.append('\n');
+            flushLine();
+        }
+
+        private void flushLine() throws IOException {
+            int length = line.length();
+            if (buffer.length < length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+            }
+            line.getChars(0, length, buffer, 0);
+            writer.write(buffer, 0, length);
+        }
+
+        private void appendCsv(Object value){
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Number) {
+                line.append(((Number) value).longValue());
+                return;
+            }
+            String text = (String) value;
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                line.append(text);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJson(Object value){
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            if (value instanceof Number) {
+                line.append(((Number) value).longValue());
+                return;
+            }
+            String text = (String) value;
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append("\\u00");
+                            line.append(Character.forDigit(c >> 4, 16));
+                            line.append(Character.forDigit(c & 0xf, 16));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.teamtreehouse.contactmgr.export;
+
+//ENTRY 30
+/**Entry 30: Streaming Export
+ * The formats ContactExporter writes:
+ * 1. CSV with the header id,firstName,lastName,email,phone. Fields with a comma, quote
+ *    or line break are quoted, quotes inside are doubled
+ * 2. NDJSON: one JSON object per line, {"id":1,"firstName":"Moo",...}, missing values
+ *    are written as null*/
+
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,186 @@
+package com.teamtreehouse.contactmgr.feed;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//ENTRY 36
+/**Entry 36: Change Feed
+ * Lets downstream systems sync only what changed instead of reading the whole table:
+ * 1. install() runs once per SessionFactory (see schema.SchemaMigrator). It creates the
+ *    sequence CONTACT_CHANGE_SEQ, the table CONTACT_TOMBSTONE and the two
+ *    ChangeVersionTrigger triggers, then gives every contact without a version one
+ *    (contacts saved before the change feed existed). Everything is IF NOT EXISTS or only
+ *    touches rows without a version, so it is cheap after the first run
+ * 2. changesSince(version, limit) returns the inserts/updates (from the indexed
+ *    CHANGEVERSION column) and deletes (from the indexed tombstone table) with a version
+ *    greater than the given one, oldest first, at most limit of them. Both are index
+ *    range scans, so a sync pass costs the number of changes, not the table size
+ * 3. A contact changed several times since the checkpoint shows up once with its latest
+ *    version, a deleted contact only as DELETE
+ * 4. pruneTombstones(version) deletes tombstones every downstream system has seen
+ * 5. Versions are handed out when a row is written, not when its transaction commits, so
+ *    a slow transaction can commit a version below one that is already visible. A sync
+ *    that passed it would never see it. committedVersion() is the highest version with
+ *    no transaction below it still open (see InFlightVersions), changesSince() never
+ *    returns more than that. A long transaction delays the feed, it cannot skip it
+ * Usage: start with version 0, then pass the version of the last change returned until
+ *    the list is empty:
+ *    List<ContactChange> changes = Application.changesSince(checkpoint, 1000);*/
+
+public class ChangeFeed {
+    private final SessionFactory sessionFactory;
+
+    public ChangeFeed(SessionFactory sessionFactory){
+        this.sessionFactory = sessionFactory;
+    }
+
+    //36-1: sequence, tombstones, triggers and versions of old rows:
+    public static void install(SessionFactory sessionFactory){
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE SEQUENCE IF NOT EXISTS CONTACT_CHANGE_SEQ");
+                    statement.execute("CREATE TABLE IF NOT EXISTS CONTACT_TOMBSTONE("
+                            + "ID INT PRIMARY KEY, CHANGEVERSION BIGINT NOT NULL)");
+                    statement.execute("CREATE INDEX IF NOT EXISTS IDX_CONTACT_TOMBSTONE_CHANGE_VERSION"
+                            + " ON CONTACT_TOMBSTONE(CHANGEVERSION)");
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS CONTACT_CHANGE_VERSION"
+                            + " BEFORE INSERT, UPDATE ON CONTACT FOR EACH ROW"
+                            + " CALL \"" + ChangeVersionTrigger.class.getName() + "\"");
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS CONTACT_DELETE_TOMBSTONE"
+                            + " AFTER DELETE ON CONTACT FOR EACH ROW"
+                            + " CALL \"" + ChangeVersionTrigger.class.getName() + "\"");
+                    //the trigger above sets the version:
+                    statement.executeUpdate("UPDATE CONTACT SET CHANGEVERSION = 0 WHERE CHANGEVERSION IS NULL");
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    //36-2: inserts, updates and deletes after a version, oldest first:
+    public List<ContactChange> changesSince(long version, int limit){
+        if (limit < 1) {
+            return Collections.emptyList();
+        }
+        Session session = openReadOnlySession();
+        try {
+            //36-5: nothing a transaction still in flight could commit below:
+            long upTo = session.doReturningWork(ChangeFeed::committedVersion);
+            if (upTo <= version) {
+                return Collections.emptyList();
+            }
+            List<Contact> upserts = session
+                    .createQuery("from Contact c where c.changeVersion > :version and c.changeVersion <= :upTo"
+                            + " order by c.changeVersion", Contact.class)
+                    .setParameter("version", version)
+                    .setParameter("upTo", upTo)
+                    .setMaxResults(limit)
+                    .getResultList();
+            List<?> deletes = session
+                    .createNativeQuery("SELECT ID, CHANGEVERSION FROM CONTACT_TOMBSTONE"
+                            + " WHERE CHANGEVERSION > :version AND CHANGEVERSION <= :upTo ORDER BY CHANGEVERSION")
+                    .setParameter("version", version)
+                    .setParameter("upTo", upTo)
+                    .setMaxResults(limit)
+                    .getResultList();
+
+            //36-3: merge both by version:
+            List<ContactChange> changes = new ArrayList<>(Math.min(limit, upserts.size() + deletes.size()));
+            int u = 0;
+            int d = 0;
+            while (changes.size() < limit && (u < upserts.size() || d < deletes.size())) {
+                Object[] delete = d < deletes.size() ? (Object[]) deletes.get(d) : null;
+                long deleteVersion = delete == null ? Long.MAX_VALUE : ((Number) delete[1]).longValue();
+                if (u < upserts.size() && upserts.get(u).getChangeVersion() < deleteVersion) {
+                    Contact contact = upserts.get(u++);
+                    changes.add(new ContactChange(ContactChange.Type.UPSERT,
+                            contact.getChangeVersion(), contact.getId(), contact));
+                } else {
+                    d++;
+                    changes.add(new ContactChange(ContactChange.Type.DELETE,
+                            deleteVersion, ((Number) delete[0]).intValue(), null));
+                }
+            }
+            return changes;
+        } finally {
+            session.close();
+        }
+    }
+
+    //36-5: highest version every change up to which is committed (or rolled back):
+    public long committedVersion(){
+        Session session = openReadOnlySession();
+        try {
+            return session.doReturningWork(ChangeFeed::committedVersion);
+        } finally {
+            session.close();
+        }
+    }
+
+    //the changes are handed out, not managed, so nothing is cached or checked for flushes:
+    private Session openReadOnlySession(){
+        Session session = sessionFactory.openSession();
+        session.setDefaultReadOnly(true);
+        session.setCacheMode(CacheMode.IGNORE);
+        return session;
+    }
+
+    //the sequence first: every version handed out before is registered by then:
+    private static long committedVersion(Connection connection){
+        try (Statement statement = connection.createStatement()) {
+            long handedOut;
+            try (ResultSet result = statement.executeQuery("SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES"
+                    + " WHERE SEQUENCE_NAME = 'CONTACT_CHANGE_SEQ'")) {
+                result.next();
+                handedOut = result.getLong(1);
+            }
+            List<Integer> uncommitted = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery(
+                    "SELECT ID FROM INFORMATION_SCHEMA.SESSIONS WHERE CONTAINS_UNCOMMITTED")) {
+                while (result.next()) {
+                    uncommitted.add(result.getInt(1));
+                }
+            }
+            long lowest = InFlightVersions.of(connection).lowest(uncommitted, handedOut);
+            return Math.min(handedOut, lowest - 1);
+        } catch (SQLException e) {
+            throw new HibernateException("Could not read the versions in flight", e);
+        }
+    }
+
+    //36-4: tombstones up to and including a version, returns how many were deleted:
+    public int pruneTombstones(long version){
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            int pruned = session
+                    .createNativeQuery("DELETE FROM CONTACT_TOMBSTONE WHERE CHANGEVERSION <= :version")
+                    .setParameter("version", version)
+                    .executeUpdate();
+            session.getTransaction().commit();
+            return pruned;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
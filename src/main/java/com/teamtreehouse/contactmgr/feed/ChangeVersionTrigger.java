@@ -0,0 +1,93 @@
+package com.teamtreehouse.contactmgr.feed;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//ENTRY 36
+/**Entry 36: Change Feed
+ * H2 trigger that records every change of the Contact table with a version from the
+ * sequence CONTACT_CHANGE_SEQ. ChangeFeed creates it twice:
+ * 1. BEFORE INSERT, UPDATE: fire() gets the new row before it is written and puts the
+ *    next version into its CHANGEVERSION column
+ * 2. AFTER DELETE: fire() gets the deleted row and writes a tombstone (id and next
+ *    version) into CONTACT_TOMBSTONE, so downstream systems learn about the delete
+ * 3. Every version handed out is registered in InFlightVersions until its transaction
+ *    ends, so ChangeFeed does not skip it while it is not committed yet
+ * NOTE: as a trigger it sees every write (sessions, stateless sessions, bulk updates and
+ *       deletes, plain SQL)*/
+
+public class ChangeVersionTrigger implements Trigger {
+    private int id = -1;
+    private int changeVersion = -1;
+    private InFlightVersions inFlight;
+
+    //36-1: column positions:
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet columns = metaData.getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                int position = columns.getInt("ORDINAL_POSITION") - 1;
+                switch (columns.getString("COLUMN_NAME").toUpperCase()) {
+                    case "ID":
+                        id = position;
+                        break;
+                    case "CHANGEVERSION":
+                        changeVersion = position;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        //the trigger must not write the version into another column:
+        if (id < 0 || changeVersion < 0) {
+            throw new SQLException("Table " + schemaName + "." + tableName
+                    + " needs the columns ID and CHANGEVERSION for trigger " + triggerName);
+        }
+        inFlight = InFlightVersions.of(conn);
+    }
+
+    //36-2: new version or tombstone:
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (newRow != null) {
+            newRow[changeVersion] = nextVersion(conn);
+            return;
+        }
+        try (PreparedStatement tombstone = conn.prepareStatement(
+                "MERGE INTO CONTACT_TOMBSTONE(ID, CHANGEVERSION) KEY(ID) VALUES (?, ?)")) {
+            tombstone.setInt(1, ((Number) oldRow[id]).intValue());
+            tombstone.setLong(2, nextVersion(conn));
+            tombstone.executeUpdate();
+        }
+    }
+
+    private long nextVersion(Connection conn) throws SQLException {
+        long version;
+        int sessionId;
+        try (PreparedStatement next = conn.prepareStatement("SELECT NEXT VALUE FOR CONTACT_CHANGE_SEQ, SESSION_ID()");
+             ResultSet result = next.executeQuery()) {
+            result.next();
+            version = result.getLong(1);
+            sessionId = result.getInt(2);
+        }
+        //36-3: in flight until the transaction ends:
+        inFlight.written(conn, sessionId, version);
+        return version;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
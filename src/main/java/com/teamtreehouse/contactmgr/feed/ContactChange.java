@@ -0,0 +1,54 @@
+package com.teamtreehouse.contactmgr.feed;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+//ENTRY 36
+/**Entry 36: Change Feed
+ * One entry of the change feed:
+ * 1. UPSERT: the contact was inserted or updated, getContact() is its current state
+ * 2. DELETE: the contact was deleted, getContact() is null
+ * getVersion() is the checkpoint to pass to the next changesSince() call*/
+
+public final class ContactChange {
+    public enum Type {
+        UPSERT, DELETE
+    }
+
+    private final Type type;
+    private final long version;
+    private final int id;
+    private final Contact contact;
+
+    ContactChange(Type type, long version, int id, Contact contact){
+        this.type = type;
+        this.version = version;
+        this.id = id;
+        this.contact = contact;
+    }
+
+    @Override
+    public String toString() {
+        return "ContactChange{" +
+                "type=" + type +
+                ", version=" + version +
+                ", id=" + id +
+                ", contact=" + contact +
+                '}';
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Contact getContact() {
+        return contact;
+    }
+}
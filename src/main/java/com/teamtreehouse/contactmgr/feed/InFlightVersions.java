@@ -0,0 +1,93 @@
+package com.teamtreehouse.contactmgr.feed;
+
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+//ENTRY 36
+/**Entry 36: Change Feed
+ * The versions handed out to transactions that have not committed yet, one registry per
+ * database (the shards each have their own):
+ * 1. ChangeVersionTrigger calls written() in the writing session for every version it
+ *    hands out. Only the first version of a transaction is kept, later ones are higher
+ * 2. ChangeFeed asks for lowest() with the ids of the sessions H2 reports as holding
+ *    uncommitted changes. Entries of other sessions belong to transactions that have
+ *    committed or rolled back and are dropped
+ * 3. Sessions come from SESSION_ID() and INFORMATION_SCHEMA.SESSIONS. Only the database
+ *    and the transaction of the writing session have no public API, h2() is the one
+ *    place that reaches into H2's org.h2.engine.Session for them: TRANSACTION_ID() is
+ *    reused by the next transaction of a session, and CONTAINS_UNCOMMITTED is already
+ *    true while the first row of a transaction is written. When an H2 upgrade changes
+ *    those internals, h2() throws, so writes to Contact fail instead of the feed
+ *    silently skipping versions (ChangeFeedTest covers a session reusing its connection)
+ * NOTE: H2 runs one statement at a time per database (MULTI_THREADED is off), so a
+ *       version handed out before ChangeFeed reads the sequence is always registered by
+ *       then. The transaction of a session is only known with the MVStore (the default),
+ *       without it an entry stays until its session is seen without uncommitted changes*/
+
+class InFlightVersions {
+    //weak: a database that is closed and forgotten takes its registry with it:
+    private static final Map<Object, InFlightVersions> DATABASES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    //H2 session id -> first version of its open transaction:
+    private final Map<Integer, Written> sessions = new ConcurrentHashMap<>();
+
+    static InFlightVersions of(Connection connection) throws SQLException {
+        return DATABASES.computeIfAbsent(h2(connection, false), database -> new InFlightVersions());
+    }
+
+    //36-1: in the writing session (SESSION_ID()), right after the version was handed out:
+    void written(Connection connection, int sessionId, long version) throws SQLException {
+        Object transaction = h2(connection, true);
+        sessions.compute(sessionId, (id, written) ->
+                written != null && written.transaction == transaction ? written : new Written(transaction, version));
+    }
+
+    //36-2: lowest version still in flight, Long.MAX_VALUE if none. handedOut is the value of
+    //      the sequence read before the uncommitted sessions were:
+    long lowest(Collection<Integer> uncommittedSessions, long handedOut){
+        long lowest = Long.MAX_VALUE;
+        for (Map.Entry<Integer, Written> entry : sessions.entrySet()) {
+            Written written = entry.getValue();
+            if (uncommittedSessions.contains(entry.getKey())) {
+                lowest = Math.min(lowest, written.version);
+            } else if (written.version <= handedOut) {
+                //committed or rolled back, unless the session started a new one meanwhile:
+                sessions.remove(entry.getKey(), written);
+            }
+        }
+        return lowest;
+    }
+
+    //36-3: the database, or the open transaction of the session (null without the MVStore),
+    //      identity is all that is used of either:
+    private static Object h2(Connection connection, boolean transaction) throws SQLException {
+        try {
+            Session session = (Session) connection.unwrap(JdbcConnection.class).getSession();
+            if (!transaction) {
+                return session.getDatabase();
+            }
+            return session.getDatabase().getMvStore() == null ? null : session.getTransaction();
+        } catch (ClassCastException | LinkageError e) {
+            throw new SQLException("The change feed needs the internals of H2 1.4 to track transactions,"
+                    + " see InFlightVersions", e);
+        }
+    }
+
+    private static class Written {
+        private final Object transaction;
+        private final long version;
+
+        Written(Object transaction, long version){
+            this.transaction = transaction;
+            this.version = version;
+        }
+    }
+}
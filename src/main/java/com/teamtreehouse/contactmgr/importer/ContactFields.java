@@ -0,0 +1,69 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * Validation shared by all formats, the parsed fields are turned into a Contact with
+ * ContactBuilder:
+ * 1. A contact needs at least a first or a last name
+ * 2. An email is optional but must look like one (something@something, no spaces)
+ * 3. A phone is optional, every character that is not a digit is dropped ("+1 (555)
+ *    010-2000" becomes 15550102000) and it can have at most 15 digits*/
+
+final class ContactFields {
+
+    private ContactFields(){}
+
+    static Contact toContact(String firstName, String lastName, String email, String phone){
+        firstName = trimToNull(firstName);
+        lastName = trimToNull(lastName);
+        email = trimToNull(email);
+
+        //29-1: name:
+        if (firstName == null && lastName == null) {
+            throw new IllegalArgumentException("missing first and last name");
+        }
+
+        //29-2: email:
+        if (email != null && (email.indexOf('@') < 1 || email.indexOf('@') == email.length() - 1
+                || email.indexOf(' ') >= 0)) {
+            throw new IllegalArgumentException("invalid email '" + email + "'");
+        }
+
+        return new ContactBuilder(firstName, lastName)
+                .withEmail(email)
+                .withPhone(parsePhone(phone))
+                .build();
+    }
+
+    //29-3: phone digits:
+    private static Long parsePhone(String phone){
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        if (digits.length() == 0) {
+            return null;
+        }
+        if (digits.length() > 15) {
+            throw new IllegalArgumentException("invalid phone '" + phone + "'");
+        }
+        return Long.parseLong(digits.toString());
+    }
+
+    private static String trimToNull(String value){
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
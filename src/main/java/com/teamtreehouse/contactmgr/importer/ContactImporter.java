@@ -0,0 +1,356 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * Imports CSV or vCard files of any size. Saving row by row with Application.save() costs
+ * one session and one commit per row, this pipeline has three stages instead:
+ * 1. ONE reader thread reads the file record by record (never the whole file) and hands
+ *    chunks of records to the parsers
+ * 2. SEVERAL parser threads turn records into Contacts with ContactBuilder and validate
+ *    them. A record that cannot be parsed is rejected and the import goes on
+ * 3. ONE writer (the calling thread) inserts the contacts through a StatelessSession, no
+ *    persistence context and JDBC batches, committing every batchSize *
+ *    batchesPerTransaction rows
+ * 4. The stages are connected by bounded queues: when the writer is slower than the
+ *    parsers (or the parsers slower than the reader) the faster stage waits. This
+ *    backpressure keeps memory bounded no matter how big the file is
+ * 5. If a transaction fails (e.g. a value too long for its column) it is rolled back and its rows are
+ *    written again one by one, so only the bad rows are rejected
+ * 6. The progress listener gets an ImportReport (rows read, imported, rejected and
+ *    rows/sec) at most once per progress interval and once at the end
+ * 7. Rejected records go to the reject listener with the reason, by default they are
+ *    logged as warnings
+ * 8. A StatelessSession bypasses the second-level cache, so Hibernate does not know the
+ *    table changed and cached queries would keep returning the rows from before the
+ *    import. The Contact regions and the query caches are evicted when the import ends,
+ *    also when it failed half way (the transactions committed until then stay)
+ * NOTE: parsers work in parallel so contacts are not inserted in file order, and the
+ *       reject listener can be called from several threads at once
+ * Usage:
+ *    ImportReport report = new ContactImporter.ImporterBuilder(Application.getSessionFactory())
+ *            .withProgressListener(System.out::println)
+ *            .build()
+ *            .importFile(Paths.get("contacts.csv"), ImportFormat.CSV);
+ * */
+
+public class ContactImporter {
+    private static final Logger LOGGER = Logger.getLogger(ContactImporter.class.getName());
+    private static final Chunk END_OF_RECORDS = new Chunk(0, Collections.emptyList());
+    private static final List<Contact> END_OF_CONTACTS = Collections.emptyList();
+
+    private final SessionFactory sessionFactory;
+    private final int parserThreads;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int transactionSize;
+    private final long progressIntervalNanos;
+    private final Consumer<ImportReport> progressListener;
+    private final BiConsumer<String, String> rejectListener;
+
+    private ContactImporter(ImporterBuilder builder){
+        this.sessionFactory = builder.sessionFactory;
+        this.parserThreads = builder.parserThreads;
+        this.chunkSize = builder.chunkSize;
+        this.queueCapacity = builder.queueCapacity;
+        this.batchSize = builder.batchSize;
+        this.transactionSize = builder.batchSize * builder.batchesPerTransaction;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.progressIntervalMillis);
+        this.progressListener = builder.progressListener;
+        this.rejectListener = builder.rejectListener;
+    }
+
+    public ImportReport importFile(Path file, ImportFormat format) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(in, format);
+        }
+    }
+
+    public ImportReport importFrom(Reader reader, ImportFormat format) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        RecordReader records = format.open(in);
+        Progress progress = new Progress();
+
+        //29-4: bounded queues between the stages:
+        BlockingQueue<Chunk> parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Contact>> writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parserThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "contact-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> readerTask = workers.submit(() -> {
+                read(records, parseQueue, progress);
+                return null;
+            });
+            for (int i = 0; i < parserThreads; i++) {
+                workers.submit(() -> {
+                    parse(records, parseQueue, writeQueue, progress);
+                    return null;
+                });
+            }
+            write(writeQueue, progress);
+            readerTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Import failed", e.getCause());
+        } finally {
+            //stops the reader and parsers if the writer failed
+            workers.shutdownNow();
+            evictCaches();
+        }
+
+        ImportReport report = progress.report();
+        progressListener.accept(report);
+        return report;
+    }
+
+    //29-1: reader stage:
+    private void read(RecordReader records, BlockingQueue<Chunk> parseQueue, Progress progress)
+            throws IOException, InterruptedException {
+        try {
+            long number = 1;
+            List<String> chunk = new ArrayList<>(chunkSize);
+            String record;
+            while ((record = records.next()) != null) {
+                chunk.add(record);
+                progress.read.increment();
+                if (chunk.size() == chunkSize) {
+                    parseQueue.put(new Chunk(number, chunk));
+                    number += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                parseQueue.put(new Chunk(number, chunk));
+            }
+        } finally {
+            for (int i = 0; i < parserThreads; i++) {
+                parseQueue.put(END_OF_RECORDS);
+            }
+        }
+    }
+
+    //29-2: parser stage:
+    private void parse(RecordReader records, BlockingQueue<Chunk> parseQueue,
+                       BlockingQueue<List<Contact>> writeQueue, Progress progress) throws InterruptedException {
+        try {
+            Chunk chunk;
+            while ((chunk = parseQueue.take()) != END_OF_RECORDS) {
+                List<Contact> contacts = new ArrayList<>(chunk.records.size());
+                for (int i = 0; i < chunk.records.size(); i++) {
+                    String record = chunk.records.get(i);
+                    try {
+                        contacts.add(records.parse(record));
+                    } catch (RuntimeException e) {
+                        reject(progress, "record " + (chunk.firstNumber + i) + ": " + record, e);
+                    }
+                }
+                writeQueue.put(contacts);
+            }
+        } finally {
+            writeQueue.put(END_OF_CONTACTS);
+        }
+    }
+
+    //29-3: writer stage:
+    private void write(BlockingQueue<List<Contact>> writeQueue, Progress progress) throws InterruptedException {
+        List<Contact> pending = new ArrayList<>(transactionSize);
+        int finishedParsers = 0;
+        while (finishedParsers < parserThreads) {
+            List<Contact> contacts = writeQueue.take();
+            if (contacts == END_OF_CONTACTS) {
+                finishedParsers++;
+                continue;
+            }
+            for (Contact contact : contacts) {
+                pending.add(contact);
+                if (pending.size() == transactionSize) {
+                    insert(pending, progress);
+                    pending.clear();
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            insert(pending, progress);
+        }
+    }
+
+    private void insert(List<Contact> contacts, Progress progress){
+        try {
+            insertInTransaction(contacts);
+            progress.imported.add(contacts.size());
+        } catch (RuntimeException e) {
+            //29-5: write the rows one by one to find the bad ones:
+            for (Contact contact : contacts) {
+                try {
+                    insertInTransaction(Collections.singletonList(contact));
+                    progress.imported.increment();
+                } catch (RuntimeException rowError) {
+                    reject(progress, contact.toString(), rowError);
+                }
+            }
+        }
+
+        //29-6: progress:
+        long now = System.nanoTime();
+        if (now - progress.lastReport >= progressIntervalNanos) {
+            progress.lastReport = now;
+            progressListener.accept(progress.report());
+        }
+    }
+
+    private void insertInTransaction(List<Contact> contacts){
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            session.setJdbcBatchSize(batchSize);
+            session.beginTransaction();
+            for (Contact contact : contacts) {
+                session.insert(contact);
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    //29-8: the rows were written behind the back of the second-level cache:
+    private void evictCaches(){
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityRegion(Contact.class);
+        cache.evictDefaultQueryRegion();
+        cache.evictQueryRegions();
+    }
+
+    //29-7: rejected records:
+    private void reject(Progress progress, String record, RuntimeException reason){
+        progress.rejected.increment();
+        rejectListener.accept(record, String.valueOf(reason.getMessage()));
+    }
+
+    private static class Chunk {
+        private final long firstNumber;
+        private final List<String> records;
+
+        Chunk(long firstNumber, List<String> records){
+            this.firstNumber = firstNumber;
+            this.records = records;
+        }
+    }
+
+    private static class Progress {
+        private final long start = System.nanoTime();
+        private final LongAdder read = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private long lastReport = start;
+
+        ImportReport report(){
+            return new ImportReport(read.sum(), imported.sum(), rejected.sum(), System.nanoTime() - start);
+        }
+    }
+
+    public static class ImporterBuilder {
+        private final SessionFactory sessionFactory;
+        private int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private int chunkSize = 1000;
+        private int queueCapacity = 16;
+        private int batchSize = 50;
+        private int batchesPerTransaction = 20;
+        private long progressIntervalMillis = 1000;
+        private Consumer<ImportReport> progressListener = report -> { };
+        private BiConsumer<String, String> rejectListener = (record, reason) ->
+                LOGGER.warning("Rejected " + record + " (" + reason + ")");
+
+        public ImporterBuilder(SessionFactory sessionFactory){
+            this.sessionFactory = sessionFactory;
+        }
+
+        public ImporterBuilder withParserThreads(int parserThreads){
+            this.parserThreads = parserThreads;
+            return this;
+        }
+
+        public ImporterBuilder withChunkSize(int chunkSize){
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public ImporterBuilder withQueueCapacity(int queueCapacity){
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public ImporterBuilder withBatchSize(int batchSize){
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public ImporterBuilder withBatchesPerTransaction(int batchesPerTransaction){
+            this.batchesPerTransaction = batchesPerTransaction;
+            return this;
+        }
+
+        public ImporterBuilder withProgressInterval(long progressIntervalMillis){
+            this.progressIntervalMillis = progressIntervalMillis;
+            return this;
+        }
+
+        public ImporterBuilder withProgressListener(Consumer<ImportReport> progressListener){
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public ImporterBuilder withRejectListener(BiConsumer<String, String> rejectListener){
+            this.rejectListener = rejectListener;
+            return this;
+        }
+
+        public ContactImporter build(){
+            if (parserThreads < 1 || chunkSize < 1 || queueCapacity < 1 || batchSize < 1 || batchesPerTransaction < 1) {
+                throw new IllegalArgumentException("Import settings must be positive");
+            }
+            return new ContactImporter(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * CSV files as written by spreadsheets and most address books:
+ * 1. The first line is the header. Columns are found by name, ignoring case, spaces and
+ *    underscores: firstName, lastName, email and phone. Other columns are ignored
+ * 2. next() returns one line, or several lines when a quoted field contains line breaks.
+ *    Whether a quote is still open is kept while reading, each line is looked at once
+ * 3. parse() splits the record on commas. Fields may be quoted with "..." and a quote
+ *    inside a quoted field is written twice ("")
+ * 4. A quote that is not closed within MAX_RECORD_LINES lines (or before the end of the
+ *    file) is a mistake in the file, not a field with line breaks. next() then returns
+ *    the first line alone and reads the lines after it again as records of their own,
+ *    so one stray quote costs one row and not the rest of the file. parse() rejects that
+ *    line because of the open quote*/
+
+class CsvRecordReader implements RecordReader {
+    private final BufferedReader in;
+    //29-4: lines read ahead for a record that turned out to be broken:
+    private final Deque<String> pending = new ArrayDeque<>();
+    private final int firstName;
+    private final int lastName;
+    private final int email;
+    private final int phone;
+
+    //29-1: read the header:
+    CsvRecordReader(BufferedReader in) throws IOException {
+        this.in = in;
+        String header = in.readLine();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV file is empty, a header line is required");
+        }
+        List<String> columns = split(header);
+        this.firstName = indexOf(columns, "firstname");
+        this.lastName = indexOf(columns, "lastname");
+        this.email = indexOf(columns, "email");
+        this.phone = indexOf(columns, "phone");
+        if (firstName < 0 && lastName < 0) {
+            throw new IllegalArgumentException("CSV header needs a firstName or lastName column: " + header);
+        }
+    }
+
+    //29-2: one record, possibly over several lines:
+    @Override
+    public String next() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+
+        boolean quoted = opensQuote(line, false);
+        if (!quoted) {
+            return line;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(line);
+        while (quoted && lines.size() < MAX_RECORD_LINES) {
+            String more = readLine();
+            if (more == null) {
+                break;
+            }
+            lines.add(more);
+            quoted = opensQuote(more, true);
+        }
+        if (quoted) {
+            //29-4: give the lines after the first one back:
+            for (int i = lines.size() - 1; i > 0; i--) {
+                pending.push(lines.get(i));
+            }
+            return line;
+        }
+        return String.join("\n", lines);
+    }
+
+    private String readLine() throws IOException {
+        return pending.isEmpty() ? in.readLine() : pending.pop();
+    }
+
+    //29-3: fields of a record:
+    @Override
+    public Contact parse(String record) {
+        List<String> fields = split(record);
+        return ContactFields.toContact(field(fields, firstName), field(fields, lastName),
+                field(fields, email), field(fields, phone));
+    }
+
+    private static String field(List<String> fields, int index){
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    private static int indexOf(List<String> columns, String name){
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i).replace(" ", "").replace("_", "").trim();
+            if (column.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //29-2: whether a quote is open after the line, given whether one was before it
+    //      (a "" inside a quoted field toggles twice):
+    private static boolean opensQuote(String line, boolean quoted){
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+        return quoted;
+    }
+
+    private static List<String> split(String record){
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Quote is not closed");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,27 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * The file formats ContactImporter understands*/
+
+public enum ImportFormat {
+    //29-1: comma separated, first line is the header:
+    CSV {
+        @Override
+        public RecordReader open(BufferedReader in) throws IOException {
+            return new CsvRecordReader(in);
+        }
+    },
+    //29-2: vCard 2.1 / 3.0 / 4.0 files with one or more cards:
+    VCARD {
+        @Override
+        public RecordReader open(BufferedReader in) {
+            return new VCardRecordReader(in);
+        }
+    };
+
+    public abstract RecordReader open(BufferedReader in) throws IOException;
+}
@@ -0,0 +1,51 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import java.util.concurrent.TimeUnit;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * Progress of a running import, also used as the final result:
+ * 1. read is the number of records read from the file so far
+ * 2. imported is the number of contacts committed to the database
+ * 3. rejected is the number of records that could not be parsed or written
+ * 4. rowsPerSecond is imported rows per second since the start*/
+
+public class ImportReport {
+    private final long read;
+    private final long imported;
+    private final long rejected;
+    private final long elapsedNanos;
+
+    ImportReport(long read, long imported, long rejected, long elapsedNanos){
+        this.read = read;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : imported * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportReport{read=%d, imported=%d, rejected=%d, elapsed=%.1fs, rows/s=%.0f}",
+                read, imported, rejected, elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1), getRowsPerSecond());
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+}
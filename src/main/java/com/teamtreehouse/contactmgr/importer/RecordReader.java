@@ -0,0 +1,25 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.io.IOException;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * Reads one file format record by record:
+ * 1. next() returns the raw text of the next record, or null at the end of the file. It is
+ *    only called by the single reader thread of ContactImporter
+ * 2. parse() turns a raw record into a Contact. It is called by several parser threads at
+ *    once so it must not change the reader. A bad record throws IllegalArgumentException
+ *    with the reason
+ * 3. No record is longer than MAX_RECORD_LINES lines. A record that does not end within
+ *    them is handed to parse() as it is and rejected there, so a broken file costs one
+ *    record and memory stays bounded*/
+
+public interface RecordReader {
+    int MAX_RECORD_LINES = 100;
+
+    String next() throws IOException;
+
+    Contact parse(String record);
+}
@@ -0,0 +1,152 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Locale;
+
+//ENTRY 29
+/**Entry 29: Bulk Import
+ * vCard files (.vcf), usually exported from phones and mail clients:
+ * 1. next() returns everything after BEGIN:VCARD up to and including END:VCARD. Folded
+ *    lines (a line starting with a space or a tab continues the previous one) are joined
+ *    back
+ * 2. parse() reads the N property (Last;First;...), falling back to FN (the full name)
+ *    split on the last space, and the first EMAIL and TEL properties. Parameters like
+ *    TYPE=work are ignored
+ * 3. A card that is not closed when the file ends, when the next BEGIN:VCARD starts or
+ *    within MAX_RECORD_LINES lines (folded lines count one by one) is returned without
+ *    its END:VCARD and parse() rejects it. After a card that was too long the lines up to
+ *    the next BEGIN:VCARD are skipped, a new card is read from there
+ * NOTE: only the fields of Contact are read, everything else in the card is skipped*/
+
+class VCardRecordReader implements RecordReader {
+    private static final String BEGIN = "BEGIN:VCARD";
+    private static final String END = "END:VCARD";
+
+    private final BufferedReader in;
+    //the line read after a line to see whether it continues it:
+    private String pending;
+    //29-3: the BEGIN:VCARD that ended an unclosed card:
+    private String unread;
+    //physical lines of the last line readUnfolded() returned:
+    private int lastLines;
+
+    VCardRecordReader(BufferedReader in){
+        this.in = in;
+    }
+
+    //29-1: one card:
+    @Override
+    public String next() throws IOException {
+        StringBuilder card = null;
+        int lines = 0;
+        String line;
+        while ((line = readUnfolded()) != null) {
+            String upper = line.trim().toUpperCase(Locale.ROOT);
+            if (upper.equals(BEGIN)) {
+                if (card != null) {
+                    //29-3: it starts the next card:
+                    unread = line;
+                    return card.toString();
+                }
+                card = new StringBuilder();
+                lines = 0;
+            } else if (card != null) {
+                card.append(line).append('\n');
+                lines += lastLines;
+                if (upper.equals(END) || lines >= MAX_RECORD_LINES) {
+                    return card.toString();
+                }
+            }
+        }
+        return card == null ? null : card.toString();
+    }
+
+    //joins at most MAX_RECORD_LINES physical lines:
+    private String readUnfolded() throws IOException {
+        if (unread != null) {
+            //already unfolded, the line after it is pending:
+            String line = unread;
+            unread = null;
+            lastLines = 1;
+            return line;
+        }
+        String line = pending != null ? pending : in.readLine();
+        pending = null;
+        if (line == null) {
+            return null;
+        }
+        StringBuilder unfolded = new StringBuilder(line);
+        lastLines = 1;
+        String next;
+        while (lastLines < MAX_RECORD_LINES && (next = in.readLine()) != null) {
+            if (!next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                unfolded.append(next, 1, next.length());
+                lastLines++;
+            } else {
+                pending = next;
+                break;
+            }
+        }
+        return unfolded.toString();
+    }
+
+    //29-2: the Contact fields of a card:
+    @Override
+    public Contact parse(String record) {
+        //29-3: the last line:
+        String closed = record.trim();
+        if (!closed.substring(closed.lastIndexOf('\n') + 1).trim().equalsIgnoreCase(END)) {
+            throw new IllegalArgumentException("Card is not closed with " + END);
+        }
+        String firstName = null;
+        String lastName = null;
+        String fullName = null;
+        String email = null;
+        String phone = null;
+
+        for (String line : record.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon);
+            int semicolon = name.indexOf(';');
+            if (semicolon >= 0) {
+                name = name.substring(0, semicolon);
+            }
+            //properties can be grouped, e.g. item1.EMAIL
+            name = name.substring(name.lastIndexOf('.') + 1).toUpperCase(Locale.ROOT);
+            String value = line.substring(colon + 1);
+
+            if (name.equals("N") && lastName == null && firstName == null) {
+                String[] parts = value.split(";", -1);
+                lastName = unescape(parts[0]);
+                firstName = parts.length > 1 ? unescape(parts[1]) : null;
+            } else if (name.equals("FN") && fullName == null) {
+                fullName = unescape(value).trim();
+            } else if (name.equals("EMAIL") && email == null) {
+                email = value;
+            } else if (name.equals("TEL") && phone == null) {
+                phone = value.startsWith("tel:") ? value.substring(4) : value;
+            }
+        }
+
+        if (isBlank(firstName) && isBlank(lastName) && fullName != null) {
+            int space = fullName.lastIndexOf(' ');
+            firstName = space < 0 ? fullName : fullName.substring(0, space);
+            lastName = space < 0 ? null : fullName.substring(space + 1);
+        }
+        return ContactFields.toContact(firstName, lastName, email, phone);
+    }
+
+    private static boolean isBlank(String value){
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static String unescape(String value){
+        return value.replace("\\,", ",").replace("\\;", ";").replace("\\\\", "\\");
+    }
+}
@@ -0,0 +1,165 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.hibernate.SessionFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * Counts and times the CRUD operations of Application and gives one place to read them,
+ * from code (snapshot()) or over JMX (ContactMetricsMXBean):
+ * 1. Application calls start() before and record() after each operation. When metrics are
+ *    off start() returns 0 without reading the clock and record() returns right away, so
+ *    the cost is one volatile read
+ * 2. Latencies go into one HdrHistogram Recorder per Operation, safe to write from many
+ *    threads without locking. snapshot() moves the recorded values into the total
+ *    histogram of the operation and reports count and percentiles
+ * 3. The Hibernate Statistics (entity loads, flushes, slowest query, cache hits...) are
+ *    switched on and off together with our metrics, Hibernate pays for counting too
+ * 4. Statements slower than the slow query threshold are logged by SlowQueryLog
+ * 5. register() is called by Application once the SessionFactory is built. It reads
+ *    hibernate.contactmgr.metrics.enabled and registers the MXBean
+ * 6. ENTRY 37: conflict() and retry() count optimistic locking conflicts and retries per
+ *    operation. They are always counted (a conflict costs a rollback anyway, one more
+ *    LongAdder increment does not matter) and show up in the OperationStats
+ * NOTE: the switch and the threshold can be changed at runtime through JMX*/
+
+public class ContactMetrics implements ContactMetricsMXBean {
+    public static final String ENABLED = "hibernate.contactmgr.metrics.enabled";
+    public static final String OBJECT_NAME = "com.teamtreehouse.contactmgr:type=ContactMetrics";
+
+    private static final ContactMetrics INSTANCE = new ContactMetrics();
+
+    private static volatile boolean enabled;
+    private static volatile SessionFactory sessionFactory;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> conflicts = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> retries = new EnumMap<>(Operation.class);
+
+    private ContactMetrics(){
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+            totals.put(operation, new Histogram(3));
+            conflicts.put(operation, new LongAdder());
+            retries.put(operation, new LongAdder());
+        }
+    }
+
+    public static ContactMetrics getInstance(){
+        return INSTANCE;
+    }
+
+    //28-5: hook up the SessionFactory and JMX:
+    public static void register(SessionFactory factory){
+        sessionFactory = factory;
+        Object setting = factory.getProperties().get(ENABLED);
+        INSTANCE.setEnabled(setting != null && Boolean.parseBoolean(setting.toString()));
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    //28-1: timing around an operation:
+    public static long start(){
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void record(Operation operation, long start){
+        if (start != 0L) {
+            INSTANCE.recorders.get(operation).recordValue(System.nanoTime() - start);
+        }
+    }
+
+    //37-1: optimistic locking conflicts and retries:
+    public static void conflict(Operation operation){
+        INSTANCE.conflicts.get(operation).increment();
+    }
+
+    public static void retry(Operation operation){
+        INSTANCE.retries.get(operation).increment();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //28-3: Hibernate statistics follow our switch:
+    @Override
+    public void setEnabled(boolean enabled) {
+        ContactMetrics.enabled = enabled;
+        SessionFactory factory = sessionFactory;
+        if (factory != null) {
+            factory.getStatistics().setStatisticsEnabled(enabled);
+        }
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return SlowQueryLog.getThresholdMillis();
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        SlowQueryLog.setThresholdMillis(thresholdMillis);
+    }
+
+    @Override
+    public long getSlowQueries() {
+        return SlowQueryLog.getSlowQueries();
+    }
+
+    //28-2: count and percentiles of every operation:
+    @Override
+    public synchronized Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Histogram total = totals.get(operation);
+            total.add(recorders.get(operation).getIntervalHistogram());
+            operations.put(operation.name(), OperationStats.of(total,
+                    conflicts.get(operation).sum(), retries.get(operation).sum()));
+        }
+        return operations;
+    }
+
+    @Override
+    public HibernateStats getHibernateStatistics() {
+        SessionFactory factory = sessionFactory;
+        return factory == null ? null : HibernateStats.of(factory.getStatistics());
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (Operation operation : Operation.values()) {
+            recorders.get(operation).reset();
+            totals.get(operation).reset();
+            conflicts.get(operation).reset();
+            retries.get(operation).reset();
+        }
+        SessionFactory factory = sessionFactory;
+        if (factory != null) {
+            factory.getStatistics().clear();
+        }
+    }
+
+    public Map<String, OperationStats> snapshot(){
+        return getOperations();
+    }
+}
@@ -0,0 +1,26 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+import java.util.Map;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * What ContactMetrics shows over JMX (e.g. in JConsole or VisualVM) under the name
+ * com.teamtreehouse.contactmgr:type=ContactMetrics*/
+
+public interface ContactMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long thresholdMillis);
+
+    long getSlowQueries();
+
+    Map<String, OperationStats> getOperations();
+
+    HibernateStats getHibernateStatistics();
+
+    void reset();
+}
@@ -0,0 +1,116 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+import org.hibernate.stat.Statistics;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * Snapshot of the Hibernate Statistics we care about. Hibernate only counts while
+ * statistics are enabled, ContactMetrics.setEnabled() turns them on and off together
+ * with our own metrics*/
+
+public class HibernateStats {
+    private final long entityLoads;
+    private final long entityInserts;
+    private final long entityUpdates;
+    private final long entityDeletes;
+    private final long flushes;
+    private final long statementsPrepared;
+    private final long queryExecutions;
+    private final long queryExecutionMaxTimeMillis;
+    private final String queryExecutionMaxTimeQuery;
+    private final long secondLevelCacheHits;
+    private final long secondLevelCacheMisses;
+    private final long naturalIdCacheHits;
+    private final long queryCacheHits;
+
+    private HibernateStats(Statistics statistics){
+        this.entityLoads = statistics.getEntityLoadCount();
+        this.entityInserts = statistics.getEntityInsertCount();
+        this.entityUpdates = statistics.getEntityUpdateCount();
+        this.entityDeletes = statistics.getEntityDeleteCount();
+        this.flushes = statistics.getFlushCount();
+        this.statementsPrepared = statistics.getPrepareStatementCount();
+        this.queryExecutions = statistics.getQueryExecutionCount();
+        this.queryExecutionMaxTimeMillis = statistics.getQueryExecutionMaxTime();
+        this.queryExecutionMaxTimeQuery = statistics.getQueryExecutionMaxTimeQueryString();
+        this.secondLevelCacheHits = statistics.getSecondLevelCacheHitCount();
+        this.secondLevelCacheMisses = statistics.getSecondLevelCacheMissCount();
+        this.naturalIdCacheHits = statistics.getNaturalIdCacheHitCount();
+        this.queryCacheHits = statistics.getQueryCacheHitCount();
+    }
+
+    static HibernateStats of(Statistics statistics){
+        return new HibernateStats(statistics);
+    }
+
+    @Override
+    public String toString() {
+        return "HibernateStats{" +
+                "entityLoads=" + entityLoads +
+                ", entityInserts=" + entityInserts +
+                ", entityUpdates=" + entityUpdates +
+                ", entityDeletes=" + entityDeletes +
+                ", flushes=" + flushes +
+                ", statementsPrepared=" + statementsPrepared +
+                ", queryExecutions=" + queryExecutions +
+                ", queryExecutionMaxTimeMillis=" + queryExecutionMaxTimeMillis +
+                ", queryExecutionMaxTimeQuery='" + queryExecutionMaxTimeQuery + '\'' +
+                ", secondLevelCacheHits=" + secondLevelCacheHits +
+                ", secondLevelCacheMisses=" + secondLevelCacheMisses +
+                ", naturalIdCacheHits=" + naturalIdCacheHits +
+                ", queryCacheHits=" + queryCacheHits +
+                '}';
+    }
+
+    public long getEntityLoads() {
+        return entityLoads;
+    }
+
+    public long getEntityInserts() {
+        return entityInserts;
+    }
+
+    public long getEntityUpdates() {
+        return entityUpdates;
+    }
+
+    public long getEntityDeletes() {
+        return entityDeletes;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public long getStatementsPrepared() {
+        return statementsPrepared;
+    }
+
+    public long getQueryExecutions() {
+        return queryExecutions;
+    }
+
+    public long getQueryExecutionMaxTimeMillis() {
+        return queryExecutionMaxTimeMillis;
+    }
+
+    public String getQueryExecutionMaxTimeQuery() {
+        return queryExecutionMaxTimeQuery;
+    }
+
+    public long getSecondLevelCacheHits() {
+        return secondLevelCacheHits;
+    }
+
+    public long getSecondLevelCacheMisses() {
+        return secondLevelCacheMisses;
+    }
+
+    public long getNaturalIdCacheHits() {
+        return naturalIdCacheHits;
+    }
+
+    public long getQueryCacheHits() {
+        return queryCacheHits;
+    }
+}
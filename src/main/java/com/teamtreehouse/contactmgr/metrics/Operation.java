@@ -0,0 +1,13 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * The operations of Application that are counted and timed by ContactMetrics*/
+
+public enum Operation {
+    SAVE,
+    FIND,
+    FETCH,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,88 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * Snapshot of the count and latency percentiles of one Operation, in microseconds. The
+ * getters make it readable as a CompositeData over JMX. ENTRY 37: conflicts and retries
+ * are the optimistic locking conflicts and retries of the operation*/
+
+public class OperationStats {
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+    private final long conflicts;
+    private final long retries;
+
+    private OperationStats(long count, double meanMicros, double p50Micros, double p99Micros,
+                           double p999Micros, double maxMicros, long conflicts, long retries){
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.conflicts = conflicts;
+        this.retries = retries;
+    }
+
+    //28-1: percentiles of a histogram recorded in nanoseconds:
+    static OperationStats of(Histogram nanos, long conflicts, long retries){
+        return new OperationStats(nanos.getTotalCount(),
+                toMicros(nanos.getMean()),
+                toMicros(nanos.getValueAtPercentile(50)),
+                toMicros(nanos.getValueAtPercentile(99)),
+                toMicros(nanos.getValueAtPercentile(99.9)),
+                toMicros(nanos.getMaxValue()),
+                conflicts, retries);
+    }
+
+    private static double toMicros(double nanos){
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OperationStats{count=%d, micros[mean=%.1f, p50=%.1f, p99=%.1f, p99.9=%.1f, max=%.1f],"
+                        + " conflicts=%d, retries=%d}",
+                count, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros, conflicts, retries);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+}
@@ -0,0 +1,116 @@
+package com.teamtreehouse.contactmgr.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+//ENTRY 28
+/**Entry 28: Metrics
+ * Logs every SQL statement that takes longer than a threshold, replacing show_sql which
+ * printed every statement without timing:
+ * 1. HikariConnectionProvider passes each connection through wrap(). With the threshold
+ *    at 0 (off) the connection is returned as is and costs nothing
+ * 2. Otherwise the connection is wrapped in a proxy whose statements time every
+ *    execute...() call
+ * 3. A statement slower than the threshold is logged as a warning on the logger
+ *    com.teamtreehouse.contactmgr.slow-query with its duration and SQL, and counted
+ * 4. The threshold comes from hibernate.contactmgr.slow_query_threshold_ms and can be
+ *    changed at runtime through ContactMetricsMXBean (new connections pick it up)*/
+
+public class SlowQueryLog {
+    public static final String THRESHOLD = "hibernate.contactmgr.slow_query_threshold_ms";
+
+    private static final Logger LOGGER = Logger.getLogger("com.teamtreehouse.contactmgr.slow-query");
+    private static final LongAdder SLOW_QUERIES = new LongAdder();
+    private static volatile long thresholdNanos;
+
+    private SlowQueryLog(){}
+
+    public static long getThresholdMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public static void setThresholdMillis(long thresholdMillis){
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis));
+    }
+
+    public static long getSlowQueries(){
+        return SLOW_QUERIES.sum();
+    }
+
+    //28-1: wrap only when the log is on:
+    public static Connection wrap(Connection connection){
+        if (thresholdNanos <= 0) {
+            return connection;
+        }
+        return proxy(Connection.class, connection, new ConnectionHandler(connection));
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler){
+        return type.cast(Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //28-2: statements created by the connection are wrapped too:
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection){
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowQueryLog.invoke(connection, method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return proxy(method.getReturnType(), result, new StatementHandler((Statement) result, sql));
+            }
+            return result;
+        }
+    }
+
+    //28-2: time the execute methods:
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        StatementHandler(Statement statement, String sql){
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return SlowQueryLog.invoke(statement, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return SlowQueryLog.invoke(statement, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                //28-3: log and count the slow ones:
+                long threshold = thresholdNanos;
+                if (threshold > 0 && elapsed >= threshold) {
+                    SLOW_QUERIES.increment();
+                    String text = sql != null ? sql : args != null && args.length > 0 ? String.valueOf(args[0]) : "batch";
+                    LOGGER.warning(String.format("Slow query (%d ms): %s", TimeUnit.NANOSECONDS.toMillis(elapsed), text));
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.teamtreehouse.contactmgr.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
 import javax.persistence.*;
 
 //ENTRY 4
@@ -17,11 +21,36 @@ import javax.persistence.*;
 
 //-> map this Contact object to a single row in the table of database
 @Entity
+//-> opt in to the second-level cache (ENTRY 21), READ_WRITE keeps the cached copy in sync
+//   with update and delete:
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+//-> ENTRY 24: indexes created by hbm2ddl for the finders in Application. The email index
+//   is not unique: imports and old databases hold duplicates (see ENTRY 35):
+@Table(indexes = {
+        @Index(name = "idx_contact_email", columnList = "email"),
+        @Index(name = "idx_contact_last_name", columnList = "lastName"),
+        @Index(name = "idx_contact_phone", columnList = "phone"),
+        //ENTRY 36: changes since a version (see feed.ChangeFeed):
+        @Index(name = "idx_contact_change_version", columnList = "changeVersion")
+})
+//-> ENTRY 24: findByEmail(), the oldest contact wins when several share the email. Cached
+//   in the contact-queries region (Application.CONTACT_QUERY_REGION) when the query cache is on:
+@NamedQuery(name = Contact.FIND_BY_EMAIL, query = "from Contact c where c.email = :email order by c.id",
+        hints = {
+                @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+                @QueryHint(name = QueryHints.CACHE_REGION, value = "contact-queries")
+        })
 public class Contact {
+    public static final String FIND_BY_EMAIL = "Contact.findByEmail";
+
     //Set this field as Id in nature (auto increment field):
     @Id
-    //Set this field Generation strategy as Identity which is auto numbering:
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //Set this field Generation strategy as a pooled sequence: IDENTITY would make
+    //Hibernate insert every row immediately and turn off JDBC insert batching, the
+    //sequence hands out blocks of 50 ids per round trip instead (see ENTRY 19):
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "contact_seq")
+    @SequenceGenerator(name = "contact_seq", sequenceName = "contact_seq", allocationSize = 50)
     private int id;
 
     //Each @Column will make each field as column name in the database table:
@@ -37,6 +66,19 @@ public class Contact {
     @Column
     private Long phone;
 
+    //ENTRY 36: set by the database on every insert and update (see feed.ChangeVersionTrigger),
+    //never written by Hibernate. It is not read back after a write, so it is only up to
+    //date on contacts loaded after the last change:
+    @Column(insertable = false, updatable = false)
+    private Long changeVersion;
+
+    //ENTRY 37: optimistic locking. Every UPDATE checks and increments it (WHERE version = ?),
+    //an update based on an old copy of the contact fails instead of overwriting the newer
+    //row. The default fills the column for rows saved before it existed:
+    @Version
+    @Column(columnDefinition = "int default 0")
+    private int version;
+
     //Default constructor for JPA:
     public Contact(){}
 
@@ -167,4 +209,12 @@ public class Contact {
     public void setPhone(Long phone) {
         this.phone = phone;
     }
+
+    public Long getChangeVersion() {
+        return changeVersion;
+    }
+
+    public int getVersion() {
+        return version;
+    }
 }
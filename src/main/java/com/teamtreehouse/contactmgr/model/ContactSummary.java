@@ -0,0 +1,51 @@
+package com.teamtreehouse.contactmgr.model;
+
+//ENTRY 31
+/**Entry 31: Contact Summaries
+ * Read-only view of a Contact for listing screens, which only show the name and email.
+ * It is NOT an entity: Hibernate creates it straight from the selected columns (a
+ * constructor expression, see Application.listSummaries) so it is never put in the
+ * persistence context and needs no dirty checking.
+ * 1. All fields are final and there are no setters, a summary never changes
+ * 2. The constructor is public because Hibernate calls it from the query*/
+
+public final class ContactSummary {
+    private final int id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+
+    //31-2: used by the constructor expression:
+    public ContactSummary(int id, String firstName, String lastName, String email){
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    @Override
+    public String toString() {
+        return "ContactSummary{" +
+                "id=" + id +
+                ", firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                ", email='" + email + '\'' +
+                '}';
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
@@ -0,0 +1,118 @@
+package com.teamtreehouse.contactmgr.pool;
+
+import com.teamtreehouse.contactmgr.metrics.SlowQueryLog;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+//ENTRY 22
+/**Entry 22: Connection Pool
+ * Hibernate asks a ConnectionProvider for every JDBC connection. This one hands them out
+ * from a HikariCP pool (hibernate.cfg.xml: hibernate.connection.provider_class)
+ * 1. configure() is called by Hibernate with all settings of hibernate.cfg.xml. Every
+ *    hibernate.hikari.* setting is passed to HikariConfig without the prefix, so any
+ *    HikariCP property can be set from the config file
+ * 2. url, user and password come from the usual hibernate.connection.* settings
+ * 3. Connections are handed out with auto commit off, the same as the built-in pool does,
+ *    since Hibernate always works inside transactions
+ * 4. PoolMetrics is plugged in as metrics tracker so the pool reports active, idle and
+ *    pending connections and the time it takes to acquire a connection
+ * 5. stop() is called when the SessionFactory is closed and shuts the pool down
+ * 6. (ENTRY 28) every connection handed out goes through SlowQueryLog, which times the
+ *    statements when hibernate.contactmgr.slow_query_threshold_ms is above 0
+ * NOTE: we do not use hibernate-hikaricp because it only accepts String settings and
+ *       there is no way to pass our metrics tracker through it*/
+
+public class HikariConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    public static final String CONFIG_PREFIX = "hibernate.hikari.";
+
+    private HikariDataSource dataSource;
+
+    //22-1: build the pool from the hibernate settings:
+    @Override
+    public void configure(Map configurationValues) {
+        Properties properties = new Properties();
+        for (Object entry : configurationValues.entrySet()) {
+            Map.Entry<?, ?> setting = (Map.Entry<?, ?>) entry;
+            String key = String.valueOf(setting.getKey());
+            if (key.startsWith(CONFIG_PREFIX) && setting.getValue() != null) {
+                properties.setProperty(key.substring(CONFIG_PREFIX.length()), setting.getValue().toString());
+            }
+        }
+        HikariConfig config = new HikariConfig(properties);
+
+        //22-2: connection settings:
+        config.setJdbcUrl(ConfigurationHelper.getString(AvailableSettings.URL, configurationValues));
+        String user = ConfigurationHelper.getString(AvailableSettings.USER, configurationValues);
+        if (user != null) {
+            config.setUsername(user);
+            config.setPassword(ConfigurationHelper.getString(AvailableSettings.PASS, configurationValues));
+        }
+
+        //22-3: Hibernate manages the transactions:
+        config.setAutoCommit(ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, configurationValues, false));
+
+        //22-4: export the pool metrics:
+        config.setMetricsTrackerFactory(PoolMetrics.FACTORY);
+
+        //28-1: slow query threshold:
+        SlowQueryLog.setThresholdMillis(ConfigurationHelper.getLong(SlowQueryLog.THRESHOLD, configurationValues, 0));
+
+        dataSource = new HikariDataSource(config);
+    }
+
+    //28-2: connections pass through the slow query log:
+    @Override
+    public Connection getConnection() throws SQLException {
+        return SlowQueryLog.wrap(dataSource.getConnection());
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType)
+                || HikariConnectionProvider.class.isAssignableFrom(unwrapType)
+                || DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType)
+                || HikariConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        }
+        if (DataSource.class.isAssignableFrom(unwrapType)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    //22-5: shut the pool down:
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.teamtreehouse.contactmgr.pool;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//ENTRY 22
+/**Entry 22: Connection Pool
+ * HikariCP calls a metrics tracker every time a connection is acquired, released, created
+ * or when a caller timed out waiting for one. We keep these numbers per pool:
+ * 1. FACTORY is given to HikariConfig (see HikariConnectionProvider), HikariCP calls it
+ *    once per pool and we remember the tracker by pool name
+ * 2. Acquire times go into an HdrHistogram Recorder, which is safe to write from many
+ *    threads without locking. snapshot() moves what was recorded since the last
+ *    snapshot into the total histogram
+ * 3. Active, idle, total connections and pending threads (callers waiting for a
+ *    connection) are read from HikariCP's PoolStats
+ * 4. snapshot() returns all numbers at once as an immutable Snapshot
+ * NOTE: acquire times are recorded in nanoseconds and reported in microseconds*/
+
+public class PoolMetrics implements IMetricsTracker {
+    private static final Map<String, PoolMetrics> POOLS = new ConcurrentHashMap<>();
+
+    //22-1: creates and remembers one tracker per pool:
+    public static final MetricsTrackerFactory FACTORY = (poolName, poolStats) -> {
+        PoolMetrics metrics = new PoolMetrics(poolName, poolStats);
+        POOLS.put(poolName, metrics);
+        return metrics;
+    };
+
+    private final String poolName;
+    private final PoolStats poolStats;
+    private final Recorder acquireNanos = new Recorder(3);
+    private final Histogram acquireTotal = new Histogram(3);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    private PoolMetrics(String poolName, PoolStats poolStats){
+        this.poolName = poolName;
+        this.poolStats = poolStats;
+    }
+
+    public static PoolMetrics forPool(String poolName){
+        return POOLS.get(poolName);
+    }
+
+    public static List<Snapshot> snapshotAll(){
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (PoolMetrics metrics : POOLS.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    //22-2: record acquire times:
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireNanos.recordValue(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        created.increment();
+    }
+
+    @Override
+    public void close() {
+        POOLS.remove(poolName, this);
+    }
+
+    //22-4: all numbers of the pool at once:
+    public synchronized Snapshot snapshot(){
+        acquireTotal.add(acquireNanos.getIntervalHistogram());
+        //22-3: current pool state:
+        return new Snapshot(poolName,
+                poolStats.getActiveConnections(),
+                poolStats.getIdleConnections(),
+                poolStats.getTotalConnections(),
+                poolStats.getPendingThreads(),
+                created.sum(),
+                timeouts.sum(),
+                acquireTotal.getTotalCount(),
+                toMicros(acquireTotal.getMean()),
+                toMicros(acquireTotal.getValueAtPercentile(50)),
+                toMicros(acquireTotal.getValueAtPercentile(99)),
+                toMicros(acquireTotal.getValueAtPercentile(99.9)),
+                toMicros(acquireTotal.getMaxValue()));
+    }
+
+    private static double toMicros(double nanos){
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    public static class Snapshot {
+        private final String poolName;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int pending;
+        private final long created;
+        private final long timeouts;
+        private final long acquireCount;
+        private final double acquireMeanMicros;
+        private final double acquireP50Micros;
+        private final double acquireP99Micros;
+        private final double acquireP999Micros;
+        private final double acquireMaxMicros;
+
+        private Snapshot(String poolName, int active, int idle, int total, int pending, long created,
+                         long timeouts, long acquireCount, double acquireMeanMicros, double acquireP50Micros,
+                         double acquireP99Micros, double acquireP999Micros, double acquireMaxMicros){
+            this.poolName = poolName;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.pending = pending;
+            this.created = created;
+            this.timeouts = timeouts;
+            this.acquireCount = acquireCount;
+            this.acquireMeanMicros = acquireMeanMicros;
+            this.acquireP50Micros = acquireP50Micros;
+            this.acquireP99Micros = acquireP99Micros;
+            this.acquireP999Micros = acquireP999Micros;
+            this.acquireMaxMicros = acquireMaxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolMetrics{" +
+                    "pool='" + poolName + '\'' +
+                    ", active=" + active +
+                    ", idle=" + idle +
+                    ", total=" + total +
+                    ", pending=" + pending +
+                    ", created=" + created +
+                    ", timeouts=" + timeouts +
+                    ", acquires=" + acquireCount +
+                    String.format(", acquireMicros[mean=%.1f, p50=%.1f, p99=%.1f, p99.9=%.1f, max=%.1f]",
+                            acquireMeanMicros, acquireP50Micros, acquireP99Micros, acquireP999Micros,
+                            acquireMaxMicros) +
+                    '}';
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getAcquireCount() {
+            return acquireCount;
+        }
+
+        public double getAcquireMeanMicros() {
+            return acquireMeanMicros;
+        }
+
+        public double getAcquireP50Micros() {
+            return acquireP50Micros;
+        }
+
+        public double getAcquireP99Micros() {
+            return acquireP99Micros;
+        }
+
+        public double getAcquireP999Micros() {
+            return acquireP999Micros;
+        }
+
+        public double getAcquireMaxMicros() {
+            return acquireMaxMicros;
+        }
+    }
+}
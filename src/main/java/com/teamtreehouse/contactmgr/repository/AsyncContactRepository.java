@@ -0,0 +1,113 @@
+package com.teamtreehouse.contactmgr.repository;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//ENTRY 27
+/**Entry 27: Contact Repository
+ * Runs the calls of a ContactRepository in the background so many independent lookups
+ * and writes can be in flight at once:
+ * 1. Every method returns a CompletableFuture right away, the work runs on the executor
+ * 2. On Java 21+ every call gets its own virtual thread (found with reflection since the
+ *    build targets Java 8). Older JDKs fall back to a fixed pool of platform threads of
+ *    maxConcurrency threads
+ * 3. A fair Semaphore with maxConcurrency permits guards the delegate: at most that many
+ *    calls hold a database connection at once, the others wait in arrival order instead
+ *    of all fighting for the connection pool. create() sizes it to the connection pool
+ * 4. Close the repository when done, this shuts the executor down
+ * NOTE: the futures complete on the executor threads, do not block inside callbacks*/
+
+public class AsyncContactRepository implements AutoCloseable {
+    private final ContactRepository delegate;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    public AsyncContactRepository(ContactRepository delegate, int maxConcurrency){
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    //27-3: as many concurrent calls as there are connections:
+    public static AsyncContactRepository create(){
+        return new AsyncContactRepository(new HibernateContactRepository(), Application.connectionPoolSize());
+    }
+
+    //27-1: async CRUD:
+    public CompletableFuture<Integer> save(Contact contact){
+        return submit(() -> delegate.save(contact));
+    }
+
+    public CompletableFuture<Contact> findContactById(int id){
+        return submit(() -> delegate.findContactById(id));
+    }
+
+    public CompletableFuture<List<Contact>> fetchAllContacts(){
+        return submit(delegate::fetchAllContacts);
+    }
+
+    public CompletableFuture<Void> update(Contact contact){
+        return submit(() -> {
+            delegate.update(contact);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> delete(Contact contact){
+        return submit(() -> {
+            delegate.delete(contact);
+            return null;
+        });
+    }
+
+    //27-3: wait for a permit, then call the delegate:
+    private <T> CompletableFuture<T> submit(Supplier<T> call){
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    //27-2: virtual threads if the JDK has them:
+    private static ExecutorService newExecutor(int maxConcurrency){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "contact-repository-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(maxConcurrency, threadFactory);
+        }
+    }
+
+    //27-4: stop the executor:
+    @Override
+    public void close(){
+        executor.shutdown();
+    }
+}
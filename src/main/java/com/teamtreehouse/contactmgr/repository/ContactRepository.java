@@ -0,0 +1,25 @@
+package com.teamtreehouse.contactmgr.repository;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.util.List;
+
+//ENTRY 27
+/**Entry 27: Contact Repository
+ * All persistence of contacts behind one interface, so callers do not depend on the
+ * static methods of Application:
+ * 1. HibernateContactRepository is the blocking implementation on top of Application
+ * 2. AsyncContactRepository wraps any ContactRepository and runs its calls on other
+ *    threads, returning CompletableFuture*/
+
+public interface ContactRepository {
+    int save(Contact contact);
+
+    Contact findContactById(int id);
+
+    List<Contact> fetchAllContacts();
+
+    void update(Contact contact);
+
+    void delete(Contact contact);
+}
@@ -0,0 +1,39 @@
+package com.teamtreehouse.contactmgr.repository;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.util.List;
+
+//ENTRY 27
+/**Entry 27: Contact Repository
+ * Blocking ContactRepository: every call runs on the caller's thread through the CRUD
+ * methods of Application (one session per call)*/
+
+public class HibernateContactRepository implements ContactRepository {
+
+    @Override
+    public int save(Contact contact) {
+        return Application.save(contact);
+    }
+
+    @Override
+    public Contact findContactById(int id) {
+        return Application.findContactById(id);
+    }
+
+    @Override
+    public List<Contact> fetchAllContacts() {
+        return Application.fetchAllContacts();
+    }
+
+    @Override
+    public void update(Contact contact) {
+        Application.update(contact);
+    }
+
+    @Override
+    public void delete(Contact contact) {
+        Application.delete(contact);
+    }
+}
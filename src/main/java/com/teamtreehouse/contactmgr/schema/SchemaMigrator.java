@@ -0,0 +1,257 @@
+package com.teamtreehouse.contactmgr.schema;
+
+import com.teamtreehouse.contactmgr.feed.ChangeFeed;
+import com.teamtreehouse.contactmgr.search.ContactSearch;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.Table;
+import org.hibernate.mapping.UniqueKey;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+//ENTRY 34
+/**Entry 34: Faster Startup
+ * hbm2ddl.auto=update reads the whole database schema over JDBC on every start, then
+ * ContactSearch.install() runs its DDL again. The schema only changes when the mapping
+ * changes, so with hibernate.contactmgr.fast_start on this is done once per mapping:
+ * 1. fingerprint() is a SHA-256 over the tables, columns, indexes, unique keys and
+ *    sequences of the mapping plus EXTENSIONS_VERSION. Bump EXTENSIONS_VERSION whenever
+ *    installExtensions() changes
+ * 2. migrate() runs the schema update and installExtensions() and stores the fingerprint
+ *    in the one row table CONTACTMGR_SCHEMA
+ * 3. ensureSchema() is called for every new SessionFactory. Without fast start Hibernate
+ *    has already updated the schema, so it only installs the extensions and stores the
+ *    fingerprint. With fast start it reads the stored fingerprint (one small query) and
+ *    only migrates when it differs
+ * 4. FAST_START_SETTINGS turn off hbm2ddl, the JDBC metadata lookup done while building
+ *    the SessionFactory (the dialect is set in hibernate.cfg.xml anyway) and HikariCP's
+ *    test connection, so no connection is opened before the fingerprint check
+ * 5. Databases created while Contact ids were IDENTITY columns (before ENTRY 19) already
+ *    hold the ids the new CONTACT_SEQ would hand out again. installExtensions() moves the
+ *    sequence past the highest id whenever it is behind, see syncContactSequence()
+ * 6. Databases created while email was a natural id (ENTRY 24) have a unique constraint
+ *    on it, which hbm2ddl never drops. installExtensions() drops it so those databases
+ *    accept duplicate emails like new ones, see dropEmailUniqueConstraint()*/
+
+public class SchemaMigrator {
+    public static final String FAST_START = "hibernate.contactmgr.fast_start";
+
+    public static final Map<String, String> FAST_START_SETTINGS;
+
+    private static final int EXTENSIONS_VERSION = 6;
+
+    static {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "none");
+        settings.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
+        settings.put("hibernate.hikari.initializationFailTimeout", "-1");
+        FAST_START_SETTINGS = Collections.unmodifiableMap(settings);
+    }
+
+    private SchemaMigrator(){}
+
+    public static boolean isFastStart(Map<?, ?> settings){
+        Object value = settings.get(FAST_START);
+        return value != null && Boolean.parseBoolean(value.toString().trim());
+    }
+
+    //34-3: called for every new SessionFactory:
+    public static void ensureSchema(Metadata metadata, SessionFactory factory, boolean fastStart){
+        String fingerprint = fingerprint(metadata);
+        if (!fastStart) {
+            installExtensions(factory);
+            if (!fingerprint.equals(storedFingerprint(factory))) {
+                storeFingerprint(factory, fingerprint);
+            }
+        } else if (!fingerprint.equals(storedFingerprint(factory))) {
+            migrate(metadata, factory);
+        }
+    }
+
+    //34-2: schema update, extensions and fingerprint:
+    public static void migrate(Metadata metadata, SessionFactory factory){
+        SchemaUpdate update = new SchemaUpdate();
+        update.execute(EnumSet.of(TargetType.DATABASE), metadata);
+        if (!update.getExceptions().isEmpty()) {
+            throw new HibernateException("Schema update failed", (Throwable) update.getExceptions().get(0));
+        }
+        installExtensions(factory);
+        storeFingerprint(factory, fingerprint(metadata));
+    }
+
+    //34-2: everything outside of the mapping (bump EXTENSIONS_VERSION when this changes):
+    private static void installExtensions(SessionFactory factory){
+        //ENTRY 19: ids saved before the sequence existed:
+        syncContactSequence(factory);
+        dropEmailUniqueConstraint(factory);
+        ContactSearch.install(factory);
+        //ENTRY 36: change versions and tombstones:
+        ChangeFeed.install(factory);
+    }
+
+    //34-5: the pooled optimizer takes a value n of the sequence as the end of the block
+    //      n - increment + 1 .. n, so after RESTART WITH MAX(ID) + increment the next block
+    //      starts right after the highest id:
+    private static void syncContactSequence(SessionFactory factory){
+        Session session = factory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    long current;
+                    long increment;
+                    try (ResultSet result = statement.executeQuery("SELECT CURRENT_VALUE, INCREMENT"
+                            + " FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'CONTACT_SEQ'")) {
+                        if (!result.next()) {
+                            return;
+                        }
+                        current = result.getLong(1);
+                        increment = result.getLong(2);
+                    }
+                    long maxId;
+                    try (ResultSet result = statement.executeQuery("SELECT MAX(ID) FROM CONTACT")) {
+                        result.next();
+                        maxId = result.getLong(1);
+                    }
+                    //every id up to CURRENT_VALUE is handed out already:
+                    if (current < maxId) {
+                        statement.execute("ALTER SEQUENCE CONTACT_SEQ RESTART WITH " + (maxId + increment));
+                    }
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    //34-6: the email index of the mapping is not unique:
+    private static void dropEmailUniqueConstraint(SessionFactory factory){
+        Session session = factory.openSession();
+        try {
+            session.doWork(connection -> {
+                List<String> constraints = new ArrayList<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT CONSTRAINT_NAME"
+                             + " FROM INFORMATION_SCHEMA.CONSTRAINTS WHERE TABLE_SCHEMA = SCHEMA()"
+                             + " AND TABLE_NAME = 'CONTACT' AND CONSTRAINT_TYPE = 'UNIQUE' AND COLUMN_LIST = 'EMAIL'")) {
+                    while (result.next()) {
+                        constraints.add(result.getString(1));
+                    }
+                }
+                try (Statement statement = connection.createStatement()) {
+                    for (String constraint : constraints) {
+                        statement.execute("ALTER TABLE CONTACT DROP CONSTRAINT \"" + constraint + "\"");
+                    }
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    //34-1: hash of the mapped schema:
+    public static String fingerprint(Metadata metadata){
+        Dialect dialect = metadata.getDatabase().getJdbcEnvironment().getDialect();
+        List<String> parts = new ArrayList<>();
+        parts.add("extensions:" + EXTENSIONS_VERSION);
+        for (Table table : metadata.collectTableMappings()) {
+            String name = table.getName();
+            parts.add("table:" + name);
+            for (Iterator<?> columns = table.getColumnIterator(); columns.hasNext(); ) {
+                Column column = (Column) columns.next();
+                parts.add("column:" + name + "." + column.getName() + ":" + column.getSqlType(dialect, metadata)
+                        + ":" + column.isNullable() + ":" + column.isUnique());
+            }
+            for (Iterator<Index> indexes = table.getIndexIterator(); indexes.hasNext(); ) {
+                parts.add("index:" + name + "." + indexes.next().getName());
+            }
+            for (Iterator<UniqueKey> keys = table.getUniqueKeyIterator(); keys.hasNext(); ) {
+                parts.add("unique:" + name + "." + keys.next().getName());
+            }
+        }
+        for (Namespace namespace : metadata.getDatabase().getNamespaces()) {
+            for (Sequence sequence : namespace.getSequences()) {
+                parts.add("sequence:" + sequence.getName().getSequenceName().getText()
+                        + ":" + sequence.getIncrementSize());
+            }
+        }
+        Collections.sort(parts);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //34-3: null when nothing was stored yet:
+    private static String storedFingerprint(SessionFactory factory){
+        Session session = factory.openSession();
+        try {
+            return session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT FINGERPRINT FROM CONTACTMGR_SCHEMA")) {
+                    return result.next() ? result.getString(1) : null;
+                } catch (SQLException e) {
+                    //the table does not exist before the first migration:
+                    return null;
+                }
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void storeFingerprint(SessionFactory factory, String fingerprint){
+        Session session = factory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS CONTACTMGR_SCHEMA(FINGERPRINT VARCHAR(64) NOT NULL)");
+                    statement.execute("DELETE FROM CONTACTMGR_SCHEMA");
+                }
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO CONTACTMGR_SCHEMA(FINGERPRINT) VALUES (?)")) {
+                    insert.setString(1, fingerprint);
+                    insert.executeUpdate();
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.teamtreehouse.contactmgr.search;
+
+import com.teamtreehouse.contactmgr.feed.ChangeFeed;
+import com.teamtreehouse.contactmgr.feed.ContactChange;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.ContactSummary;
+import org.apache.lucene.analysis.StopAnalyzer;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//ENTRY 32
+/**Entry 32: Search
+ * Name and email search without LIKE '%x%' table scans, with a Lucene index on disk that
+ * follows the change feed (see feed.ChangeFeed), so it only ever sees committed changes:
+ * 1. install() runs once per SessionFactory (see schema.SchemaMigrator). Search used H2's
+ *    Lucene full-text index before, which commits the Lucene index for every row written
+ *    and leaves it in many small segments. install() drops it (FTL_DROP_ALL) and its
+ *    trigger from databases that still have it
+ * 2. search() turns the typed text into a Lucene query where every word must match,
+ *    either as a whole word or as the beginning of one. Whole word matches score higher.
+ *    The FullTextIndex ranks the hits, offset and limit page through them
+ * 3. suggest() is the type-ahead: it asks the FullTextIndex for the ids of the contacts
+ *    having a word starting with the prefix (see PrefixIndex)
+ * 4. The FullTextIndex lives next to the database files (<database>.search, or the
+ *    directory set with hibernate.contactmgr.search_directory), in memory for in-memory
+ *    databases. A background thread applies the changes committed since the last pass,
+ *    1000 at a time, every 100 ms and commits the index with the last change version
+ *    at most once a second, so a restart only replays the changes since. The index is
+ *    built from the table (also in the background) only when there is none yet, its
+ *    FORMAT changed or it is ahead of the database. Searches never wait for the thread,
+ *    they use the last refreshed snapshot. refresh() catches up on the caller's thread
+ * 5. Both load the ContactSummary of the hits in one query and return them in rank
+ *    order. A hit is only returned if the loaded contact still has the words, since a
+ *    contact can change after the index caught up (or be deleted with its tombstone
+ *    pruned before it was replayed). When that drops hits more are fetched, so a page is
+ *    only short when there are no more hits
+ * NOTE: offset counts checked hits, so search() loads the summaries of the hits before
+ *       the page as well. `Application migrate` builds the index of a database that has
+ *       none, so a first start does not search a half built one*/
+
+public class ContactSearch implements AutoCloseable {
+    public static final String DIRECTORY = "hibernate.contactmgr.search_directory";
+
+    private static final Logger LOGGER = Logger.getLogger(ContactSearch.class.getName());
+    private static final String SPECIAL_CHARACTERS = "+-&|!(){}[]^\"~*?:\\/";
+    private static final int CATCH_UP_BATCH = 1000;
+    private static final long REFRESH_MILLIS = 100;
+    private static final long COMMIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    //created by FTL_INIT:
+    private static final String[] FULL_TEXT_LUCENE_ALIASES = {"FTL_INIT", "FTL_CREATE_INDEX", "FTL_DROP_INDEX",
+            "FTL_SEARCH", "FTL_SEARCH_DATA", "FTL_REINDEX", "FTL_DROP_ALL"};
+
+    private final SessionFactory sessionFactory;
+    private final ChangeFeed changeFeed;
+    private final FullTextIndex fullTextIndex;
+    private final ScheduledExecutorService refresher;
+    //only the writers take it, searches do not:
+    private final Lock updates = new ReentrantLock();
+    //guarded by updates, the index is checked against the database on the first pass:
+    private long indexedVersion;
+    private boolean checked;
+    private long lastCommit = System.nanoTime();
+
+    public ContactSearch(SessionFactory sessionFactory, ChangeFeed changeFeed){
+        this.sessionFactory = sessionFactory;
+        this.changeFeed = changeFeed;
+        this.fullTextIndex = new FullTextIndex(directory(sessionFactory));
+        this.indexedVersion = fullTextIndex.committedVersion();
+        //32-4: one daemon thread that keeps the index up to date:
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "contact-search-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshInBackground, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    //32-1: the index lives outside the database, only H2's full-text index has to go:
+    public static void install(SessionFactory sessionFactory){
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    boolean fullTextLucene;
+                    try (ResultSet schemas = statement.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA"
+                            + " WHERE SCHEMA_NAME = 'FTL'")) {
+                        schemas.next();
+                        fullTextLucene = schemas.getInt(1) > 0;
+                    }
+                    if (fullTextLucene) {
+                        //drops the FTL schema, its triggers and the index files:
+                        statement.execute("CREATE ALIAS IF NOT EXISTS FTL_DROP_ALL FOR \"org.h2.fulltext.FullTextLucene.dropAll\"");
+                        statement.execute("CALL FTL_DROP_ALL()");
+                    }
+                    for (String alias : FULL_TEXT_LUCENE_ALIASES) {
+                        statement.execute("DROP ALIAS IF EXISTS " + alias);
+                    }
+                    //the prefix index followed the table with a trigger before, which also
+                    //saw writes that were rolled back:
+                    statement.execute("DROP TRIGGER IF EXISTS CONTACT_PREFIX_INDEX");
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    //32-2: ranked full-text search:
+    public List<ContactSummary> search(String text, int offset, int limit){
+        String query = toLuceneQuery(text);
+        if (query == null || limit < 1) {
+            return Collections.emptyList();
+        }
+        List<String> terms = terms(text);
+        int skip = Math.max(0, offset);
+        int wanted = skip + limit;
+        //32-5: page over the checked hits:
+        List<ContactSummary> hits = new ArrayList<>(wanted);
+        int searched = 0;
+        while (hits.size() < wanted) {
+            int batch = Math.max(limit, wanted - hits.size());
+            List<Integer> ids = fullTextIndex.ids(query, searched, batch);
+            searched += ids.size();
+            hits.addAll(summaries(ids, summary -> containsAll(summary, terms)));
+            if (ids.size() < batch) {
+                break;
+            }
+        }
+        if (hits.size() <= skip) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(hits.subList(skip, Math.min(wanted, hits.size())));
+    }
+
+    //32-3: type-ahead:
+    public List<ContactSummary> suggest(String prefix, int limit){
+        if (limit < 1) {
+            return Collections.emptyList();
+        }
+        //32-5: ask for more ids while hits are dropped:
+        for (int wanted = limit; ; wanted = (int) Math.min(Integer.MAX_VALUE, 2L * wanted)) {
+            List<Integer> ids = fullTextIndex.prefixIds(prefix, wanted);
+            List<ContactSummary> hits = summaries(ids, summary -> PrefixIndex.matches(prefix,
+                    summary.getFirstName(), summary.getLastName(), summary.getEmail()));
+            if (hits.size() >= limit || ids.size() < wanted) {
+                return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+            }
+        }
+    }
+
+    //32-4: waits until search() and suggest() see every change committed before the call:
+    public void refresh(){
+        catchUp(true);
+    }
+
+    private void refreshInBackground(){
+        if (sessionFactory.isClosed()) {
+            refresher.shutdown();
+            return;
+        }
+        try {
+            catchUp(false);
+        } catch (RuntimeException e) {
+            //tried again on the next pass:
+            LOGGER.log(Level.WARNING, "Could not bring the search index up to date", e);
+        }
+    }
+
+    //32-4: apply the committed changes since the last pass, build the index if needed:
+    private void catchUp(boolean commit){
+        updates.lock();
+        try {
+            if (!checked) {
+                //a database restored from an older backup is behind its index:
+                if (indexedVersion < 0 || indexedVersion > changeFeed.committedVersion()) {
+                    build();
+                }
+                checked = true;
+            }
+            List<ContactChange> changes;
+            while (!(changes = changeFeed.changesSince(indexedVersion, CATCH_UP_BATCH)).isEmpty()) {
+                for (ContactChange change : changes) {
+                    if (change.getType() == ContactChange.Type.UPSERT) {
+                        Contact contact = change.getContact();
+                        fullTextIndex.put(contact.getId(), contact.getFirstName(), contact.getLastName(), contact.getEmail());
+                    } else {
+                        fullTextIndex.remove(change.getId());
+                    }
+                    indexedVersion = change.getVersion();
+                }
+                fullTextIndex.refresh();
+            }
+            if (indexedVersion > fullTextIndex.committedVersion()
+                    && (commit || System.nanoTime() - lastCommit >= COMMIT_NANOS)) {
+                fullTextIndex.commit(indexedVersion);
+                lastCommit = System.nanoTime();
+            }
+        } finally {
+            updates.unlock();
+        }
+    }
+
+    //the feed replays whatever the scan already saw, put() does not mind:
+    private void build(){
+        long version = changeFeed.committedVersion();
+        fullTextIndex.clear();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        ScrollableResults results = session
+                .createQuery("select c.id, c.firstName, c.lastName, c.email from Contact c")
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                Object[] row = results.get();
+                fullTextIndex.put((Integer) row[0], (String) row[1], (String) row[2], (String) row[3]);
+            }
+        } finally {
+            results.close();
+            session.close();
+        }
+        fullTextIndex.optimize();
+        indexedVersion = version;
+        fullTextIndex.commit(version);
+        lastCommit = System.nanoTime();
+    }
+
+    //32-4: stops the thread and commits what it applied:
+    @Override
+    public void close(){
+        refresher.shutdown();
+        try {
+            refresher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        updates.lock();
+        try {
+            if (indexedVersion > fullTextIndex.committedVersion()) {
+                fullTextIndex.commit(indexedVersion);
+            }
+            fullTextIndex.close();
+        } finally {
+            updates.unlock();
+        }
+    }
+
+    FullTextIndex fullTextIndex(){
+        return fullTextIndex;
+    }
+
+    //32-4: <database>.search next to the database files, in memory without them:
+    private static Directory directory(SessionFactory sessionFactory){
+        Object configured = sessionFactory.getProperties().get(DIRECTORY);
+        try {
+            if (configured != null) {
+                return FSDirectory.open(new File(configured.toString()));
+            }
+            String database = databasePath(sessionFactory);
+            return database == null ? new RAMDirectory() : FSDirectory.open(new File(database + ".search"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //null for in-memory databases:
+    private static String databasePath(SessionFactory sessionFactory){
+        Session session = sessionFactory.openSession();
+        try {
+            return session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT DATABASE_PATH()")) {
+                    result.next();
+                    return result.getString(1);
+                }
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    //32-5: summaries in rank order, without ids that are gone or do not match anymore:
+    private List<ContactSummary> summaries(List<Integer> ids, Predicate<ContactSummary> matches){
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, ContactSummary> byId = new HashMap<>();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            List<ContactSummary> found = session.createQuery("select new com.teamtreehouse.contactmgr.model.ContactSummary("
+                    + "c.id, c.firstName, c.lastName, c.email) from Contact c where c.id in (:ids)", ContactSummary.class)
+                    .setParameterList("ids", ids)
+                    .getResultList();
+            for (ContactSummary summary : found) {
+                byId.put(summary.getId(), summary);
+            }
+        } finally {
+            session.close();
+        }
+        List<ContactSummary> ranked = new ArrayList<>(byId.size());
+        for (Integer id : ids) {
+            ContactSummary summary = byId.get(id);
+            if (summary != null && matches.test(summary)) {
+                ranked.add(summary);
+            }
+        }
+        return ranked;
+    }
+
+    //32-5: every term Lucene searched for is in the contact (a word starting with a term
+    //      contains it):
+    static boolean containsAll(ContactSummary summary, List<String> terms){
+        String text = (summary.getFirstName() + " " + summary.getLastName() + " " + summary.getEmail())
+                .toLowerCase(Locale.ROOT);
+        for (String term : terms) {
+            if (!text.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //32-5: the letters and digits Lucene's StandardAnalyzer keeps, without its stop words:
+    static List<String> terms(String text){
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT) + " ";
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (term.length() > 0) {
+                if (!StopAnalyzer.ENGLISH_STOP_WORDS_SET.contains(term.toString())) {
+                    terms.add(term.toString());
+                }
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    //32-2: every word as +(word word*):
+    static String toLuceneQuery(String text){
+        if (text == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : text.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            StringBuilder escaped = new StringBuilder(word.length());
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+                    escaped.append('\\');
+                }
+                escaped.append(c);
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append("+(").append(escaped).append(' ').append(escaped).append("*)");
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+}
@@ -0,0 +1,312 @@
+package com.teamtreehouse.contactmgr.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//ENTRY 32
+/**Entry 32: Search
+ * Lucene index of the first name, last name and email of every contact, for ranked word
+ * search and type-ahead:
+ * 1. One document per contact: the id (stored, to find it again), the text of the three
+ *    fields and its words for type-ahead (see PrefixIndex). The analyzer is Lucene's
+ *    StandardAnalyzer as of Lucene 3.0, which keeps an email as one word and drops
+ *    English stop words
+ * 2. put() replaces the document of a contact, remove() deletes it. ContactSearch calls
+ *    both with committed changes only (from the change feed) and refresh() once per
+ *    batch, so searches see a batch at once and Lucene writes one segment per batch
+ *    instead of one per row. Lucene merges the segments in the background
+ * 3. ids() runs a query in Lucene syntax and returns the ids of the hits in rank order,
+ *    offset and limit page through them. prefixIds() is the type-ahead
+ * 4. optimize() merges the index into one segment, ContactSearch calls it after building
+ *    the index from the table
+ * 5. The index lives in the given Directory, on disk for ContactSearch. commit(version)
+ *    makes the changes durable together with the last change version applied, which
+ *    committedVersion() reads back when the index is opened again. It is -1 when there
+ *    was no index yet, or one of an older FORMAT (which is thrown away)
+ * 6. A query word* used to expand to every word starting with it, thousands of terms
+ *    for a short prefix of a million contacts. The PREFIX field has the first 1 to
+ *    MAX_PREFIX characters of every analyzed word, so word* is one term there. Longer
+ *    prefixes are rare and match few words, they still expand
+ * NOTE: close() does not commit, changes after the last commit are applied again from
+ *       the change feed*/
+
+public class FullTextIndex implements AutoCloseable {
+    static final Version VERSION = Version.LUCENE_30;
+    static final String WORD = "word";
+    private static final String ID = "id";
+    private static final String TEXT = "text";
+    private static final String PREFIX = "prefix";
+    private static final int MAX_PREFIX = 16;
+    private static final FieldSelector ID_ONLY = new MapFieldSelector(ID);
+    //32-5: commit data, bump FORMAT when the documents or the analyzer change:
+    private static final String FORMAT_KEY = "format";
+    private static final String FORMAT = "1";
+    private static final String CHANGE_VERSION_KEY = "changeVersion";
+
+    private final Analyzer analyzer = new StandardAnalyzer(VERSION);
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+    private volatile long committedVersion;
+
+    public FullTextIndex(){
+        this(new RAMDirectory());
+    }
+
+    //32-5: opens the index in the directory, or starts a new one:
+    public FullTextIndex(Directory directory){
+        try {
+            Map<String, String> commitData = IndexReader.indexExists(directory)
+                    ? IndexReader.getCommitUserData(directory) : Collections.<String, String>emptyMap();
+            boolean current = FORMAT.equals(commitData.get(FORMAT_KEY));
+            writer = new IndexWriter(directory, new IndexWriterConfig(VERSION, analyzer)
+                    .setOpenMode(current ? OpenMode.CREATE_OR_APPEND : OpenMode.CREATE));
+            searchers = new SearcherManager(writer, true, null);
+            committedVersion = current ? Long.parseLong(commitData.get(CHANGE_VERSION_KEY)) : -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //32-2: keep the index in sync:
+    public void put(int id, String firstName, String lastName, String email){
+        Document document = new Document();
+        document.add(new Field(ID, String.valueOf(id), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        String text = text(firstName, lastName, email);
+        document.add(new Field(TEXT, text, Field.Store.NO, Field.Index.ANALYZED));
+        //32-6: matched as a whole, no frequencies, positions or norms needed:
+        Field prefixes = new Field(PREFIX, new PrefixTokens(analyzer.tokenStream(TEXT, new StringReader(text))));
+        prefixes.setIndexOptions(FieldInfo.IndexOptions.DOCS_ONLY);
+        prefixes.setOmitNorms(true);
+        document.add(prefixes);
+        for (String word : PrefixIndex.words(firstName, lastName, email)) {
+            document.add(new Field(WORD, word, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+        try {
+            writer.updateDocument(new Term(ID, String.valueOf(id)), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void remove(int id){
+        try {
+            writer.deleteDocuments(new Term(ID, String.valueOf(id)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //32-4: before building the index again:
+    public void clear(){
+        try {
+            writer.deleteAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //32-2: make the changes since the last refresh visible to ids():
+    public void refresh(){
+        try {
+            searchers.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //32-3: ids of the hits, best first:
+    public List<Integer> ids(String query, int offset, int limit){
+        List<Integer> ids = new ArrayList<>();
+        if (limit < 1) {
+            return ids;
+        }
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            TopDocs hits = searcher.search(new PrefixQueryParser(analyzer).parse(query), offset + limit);
+            ScoreDoc[] docs = hits.scoreDocs;
+            for (int i = offset; i < docs.length; i++) {
+                ids.add(id(searcher, docs[i].doc));
+            }
+            return ids;
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid search: " + query, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //32-3: ids of the contacts having a word starting with the prefix:
+    public List<Integer> prefixIds(String prefix, int limit){
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            return PrefixIndex.ids(searcher, prefix, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    static int id(IndexSearcher searcher, int doc) throws IOException {
+        return Integer.parseInt(searcher.doc(doc, ID_ONLY).get(ID));
+    }
+
+    //32-5: durable up to the given change version:
+    public void commit(long changeVersion){
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(FORMAT_KEY, FORMAT);
+        commitData.put(CHANGE_VERSION_KEY, String.valueOf(changeVersion));
+        try {
+            writer.commit(commitData);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        committedVersion = changeVersion;
+    }
+
+    public long committedVersion(){
+        return committedVersion;
+    }
+
+    //32-4:
+    public void optimize(){
+        try {
+            writer.forceMerge(1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        refresh();
+    }
+
+    public int size(){
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            release(searcher);
+        }
+    }
+
+    public int segments(){
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            return searcher.getIndexReader().getSequentialSubReaders().length;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //32-5: drops what was not committed:
+    @Override
+    public void close(){
+        try {
+            searchers.close();
+            writer.rollback();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void release(IndexSearcher searcher){
+        try {
+            searchers.release(searcher);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String text(String firstName, String lastName, String email){
+        StringBuilder text = new StringBuilder();
+        for (String value : new String[]{firstName, lastName, email}) {
+            if (value != null) {
+                text.append(value).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    //32-6: the prefixes of every token of the input:
+    private static final class PrefixTokens extends TokenFilter {
+        private final CharTermAttribute term = addAttribute(CharTermAttribute.class);
+        private char[] token = new char[0];
+        private int length;
+        private int prefix;
+
+        PrefixTokens(TokenStream input){
+            super(input);
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            while (prefix >= length) {
+                if (!input.incrementToken()) {
+                    return false;
+                }
+                length = Math.min(term.length(), MAX_PREFIX);
+                token = Arrays.copyOf(term.buffer(), length);
+                prefix = 0;
+            }
+            term.copyBuffer(token, 0, ++prefix);
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            length = 0;
+            prefix = 0;
+        }
+    }
+
+    //32-6: word* of the text is one PREFIX term, scored like the expanded query was:
+    private static final class PrefixQueryParser extends QueryParser {
+        PrefixQueryParser(Analyzer analyzer){
+            super(VERSION, TEXT, analyzer);
+        }
+
+        @Override
+        protected Query newPrefixQuery(Term prefix){
+            if (TEXT.equals(prefix.field()) && prefix.text().length() <= MAX_PREFIX) {
+                return new ConstantScoreQuery(new TermQuery(new Term(PREFIX, prefix.text())));
+            }
+            return super.newPrefixQuery(prefix);
+        }
+    }
+}
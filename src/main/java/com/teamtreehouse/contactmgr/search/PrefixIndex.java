@@ -0,0 +1,108 @@
+package com.teamtreehouse.contactmgr.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+//ENTRY 32
+/**Entry 32: Search
+ * Type-ahead on the words of a contact (first name, last name, email and the part of the
+ * email before the @), which FullTextIndex stores lowercase and untokenized in its WORD
+ * field, so they live on disk with the rest of the index:
+ * 1. words() gives the words of a contact. Lucene keeps the terms of a field sorted, so
+ *    all words starting with a prefix are next to each other and one TermEnum walks them
+ * 2. FullTextIndex.put() replaces the words of a contact with its document, remove()
+ *    drops them. ContactSearch calls both with committed changes only (from the change
+ *    feed), one index per database
+ * 3. ids() walks the words starting with the prefix in alphabetical order and stops as
+ *    soon as it has limit ids. An exact match comes first, since a word sorts before the
+ *    words it starts, but completions are not sorted by length ("jo", "joanne", "joe",
+ *    "john", "johnson")
+ * 4. matches() tells whether a contact has a word starting with the prefix, to check a
+ *    loaded contact against the index*/
+
+public class PrefixIndex {
+    private PrefixIndex(){}
+
+    //32-3: ids of the best matching contacts:
+    static List<Integer> ids(IndexSearcher searcher, String prefix, int limit) throws IOException {
+        String from = normalize(prefix);
+        Set<Integer> ids = new LinkedHashSet<>();
+        if (from == null || limit < 1) {
+            return new ArrayList<>(ids);
+        }
+        IndexReader reader = searcher.getIndexReader();
+        TermEnum words = reader.terms(new Term(FullTextIndex.WORD, from));
+        TermDocs docs = reader.termDocs();
+        try {
+            for (Term word = words.term(); isMatch(word, from); word = words.next() ? words.term() : null) {
+                docs.seek(words);
+                while (docs.next()) {
+                    ids.add(FullTextIndex.id(searcher, docs.doc()));
+                    if (ids.size() == limit) {
+                        return new ArrayList<>(ids);
+                    }
+                }
+            }
+        } finally {
+            docs.close();
+            words.close();
+        }
+        return new ArrayList<>(ids);
+    }
+
+    //terms are sorted by field, then text:
+    private static boolean isMatch(Term word, String prefix){
+        return word != null && FullTextIndex.WORD.equals(word.field()) && word.text().startsWith(prefix);
+    }
+
+    //32-4:
+    public static boolean matches(String prefix, String firstName, String lastName, String email){
+        String from = normalize(prefix);
+        if (from == null) {
+            return false;
+        }
+        for (String word : words(firstName, lastName, email)) {
+            if (word.startsWith(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //32-1: the words put() stores:
+    static Set<String> words(String firstName, String lastName, String email){
+        Set<String> words = new LinkedHashSet<>();
+        addWord(words, firstName);
+        addWord(words, lastName);
+        addWord(words, email);
+        if (email != null && email.indexOf('@') > 0) {
+            addWord(words, email.substring(0, email.indexOf('@')));
+        }
+        return words;
+    }
+
+    private static void addWord(Set<String> words, String value){
+        String word = normalize(value);
+        if (word != null) {
+            words.add(word);
+        }
+    }
+
+    private static String normalize(String value){
+        if (value == null) {
+            return null;
+        }
+        String word = value.trim().toLowerCase(Locale.ROOT);
+        return word.isEmpty() ? null : word;
+    }
+}
@@ -0,0 +1,199 @@
+package com.teamtreehouse.contactmgr.shard;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//ENTRY 33
+/**Entry 33: Sharding
+ * Moves contacts when the number of shards changes, e.g. from 4 to 6 shard files:
+ * 1. Every shard from 0 up to the larger of the two counts is opened (new shard files are
+ *    created empty)
+ * 2. Each old shard is read with a forward only cursor. A contact whose shard under the
+ *    new count is different is collected for its target shard
+ * 3. Every BATCH_SIZE contacts for a target are inserted there and committed FIRST, then
+ *    deleted from the source. The insert records the source shard and id of every contact
+ *    in the table CONTACT_REBALANCE of the target, in the same transaction
+ * 4. If the rebalance stops in between, the last batch is on both shards but never lost.
+ *    Running it again with the same counts resumes: contacts recorded in CONTACT_REBALANCE
+ *    (or whose email is already on the target) are not inserted again, only deleted from
+ *    the source. A failed delete is rolled back and left for that next run
+ * 5. Shards beyond the new count are emptied completely, their files can be deleted
+ *    afterwards
+ * 6. When every shard is drained CONTACT_REBALANCE is dropped. Returns the number of
+ *    contacts copied and deleted by this run, contacts a previous run already copied
+ *    only count there
+ * NOTE: a moved contact gets a new id on its new shard, so its global id changes. Run the
+ *       rebalance while nothing else writes to the shards*/
+
+public class ShardRebalancer {
+    private static final int BATCH_SIZE = 500;
+
+    private ShardRebalancer(){}
+
+    public static long rebalance(int oldShardCount, int newShardCount){
+        return rebalance(ShardedContactStore.DEFAULT_URL_PATTERN, oldShardCount, newShardCount);
+    }
+
+    public static long rebalance(String urlPattern, int oldShardCount, int newShardCount){
+        if (oldShardCount < 1 || newShardCount < 1) {
+            throw new IllegalArgumentException("shard counts must be positive");
+        }
+        //33-1: open old and new shards:
+        List<SessionFactory> shards = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < Math.max(oldShardCount, newShardCount); shard++) {
+                shards.add(ShardedContactStore.openShard(urlPattern, shard));
+                //33-3: progress of this and of an earlier run that stopped:
+                execute(shards.get(shard), "CREATE TABLE IF NOT EXISTS CONTACT_REBALANCE("
+                        + "SOURCESHARD INT NOT NULL, SOURCEID INT NOT NULL, PRIMARY KEY(SOURCESHARD, SOURCEID))");
+            }
+            long moved = 0;
+            for (int shard = 0; shard < oldShardCount; shard++) {
+                moved += drain(shards, shard, newShardCount);
+            }
+            //33-6: done, a later rebalance starts without progress:
+            for (SessionFactory shard : shards) {
+                execute(shard, "DROP TABLE IF EXISTS CONTACT_REBALANCE");
+            }
+            return moved;
+        } finally {
+            for (SessionFactory shard : shards) {
+                shard.close();
+            }
+        }
+    }
+
+    //33-2: move the contacts of one shard that belong elsewhere:
+    private static long drain(List<SessionFactory> shards, int source, int newShardCount){
+        Map<Integer, List<Contact>> pending = new HashMap<>();
+        long moved = 0;
+        StatelessSession session = shards.get(source).openStatelessSession();
+        ScrollableResults results = session.createQuery("from Contact c order by c.id", Contact.class)
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                Contact contact = (Contact) results.get(0);
+                int target = ShardRouter.shardFor(contact, newShardCount);
+                if (target == source) {
+                    continue;
+                }
+                List<Contact> batch = pending.computeIfAbsent(target, key -> new ArrayList<>());
+                batch.add(contact);
+                if (batch.size() == BATCH_SIZE) {
+                    moved += move(shards.get(source), source, shards.get(target), batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            results.close();
+            session.close();
+        }
+        for (Map.Entry<Integer, List<Contact>> batch : pending.entrySet()) {
+            if (!batch.getValue().isEmpty()) {
+                moved += move(shards.get(source), source, shards.get(batch.getKey()), batch.getValue());
+            }
+        }
+        return moved;
+    }
+
+    //33-3: insert on the target, then delete on the source, returns how many were copied:
+    private static int move(SessionFactory source, int sourceShard, SessionFactory target, List<Contact> contacts){
+        List<Integer> sourceIds = new ArrayList<>(contacts.size());
+        List<String> emails = new ArrayList<>();
+        for (Contact contact : contacts) {
+            sourceIds.add(contact.getId());
+            if (contact.getEmail() != null) {
+                emails.add(contact.getEmail());
+            }
+        }
+
+        int copied = 0;
+        StatelessSession insert = target.openStatelessSession();
+        try {
+            insert.beginTransaction();
+            //33-4: already moved by a run that stopped before the delete:
+            Set<Integer> recorded = new HashSet<>();
+            for (Object id : insert.createNativeQuery("SELECT SOURCEID FROM CONTACT_REBALANCE"
+                    + " WHERE SOURCESHARD = :shard AND SOURCEID IN (:ids)")
+                    .setParameter("shard", sourceShard)
+                    .setParameterList("ids", sourceIds)
+                    .getResultList()) {
+                recorded.add(((Number) id).intValue());
+            }
+            Set<String> existing = new HashSet<>();
+            if (!emails.isEmpty()) {
+                existing.addAll(insert.createQuery("select c.email from Contact c where c.email in (:emails)", String.class)
+                        .setParameterList("emails", emails)
+                        .getResultList());
+            }
+            for (Contact contact : contacts) {
+                int sourceId = contact.getId();
+                if (recorded.contains(sourceId)) {
+                    continue;
+                }
+                if (contact.getEmail() == null || !existing.contains(contact.getEmail())) {
+                    insert.insert(contact);
+                    copied++;
+                }
+                insert.createNativeQuery("INSERT INTO CONTACT_REBALANCE(SOURCESHARD, SOURCEID) VALUES (:shard, :id)")
+                        .setParameter("shard", sourceShard)
+                        .setParameter("id", sourceId)
+                        .executeUpdate();
+            }
+            insert.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (insert.getTransaction().isActive()) {
+                insert.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            insert.close();
+        }
+
+        StatelessSession delete = source.openStatelessSession();
+        try {
+            delete.beginTransaction();
+            delete.createQuery("delete from Contact c where c.id in (:ids)")
+                    .setParameterList("ids", sourceIds)
+                    .executeUpdate();
+            delete.getTransaction().commit();
+        } catch (RuntimeException e) {
+            //33-4: the contacts stay on both shards until the next run:
+            if (delete.getTransaction().isActive()) {
+                delete.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            delete.close();
+        }
+        return copied;
+    }
+
+    private static void execute(SessionFactory shard, String sql){
+        StatelessSession session = shard.openStatelessSession();
+        try {
+            session.beginTransaction();
+            session.createNativeQuery(sql).executeUpdate();
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
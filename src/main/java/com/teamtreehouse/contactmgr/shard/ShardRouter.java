@@ -0,0 +1,59 @@
+package com.teamtreehouse.contactmgr.shard;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+
+import java.util.Locale;
+
+//ENTRY 33
+/**Entry 33: Sharding
+ * Decides which shard a contact lives on:
+ * 1. The shard key is the email, lowercased and trimmed so "Moo@X.com" and "moo@x.com"
+ *    end up on the same shard (and findByEmail knows where to look). Contacts without an
+ *    email use their first and last name instead
+ * 2. The key's String.hashCode() (which is the same on every JVM) is mixed so close keys
+ *    spread well, then taken modulo the number of shards
+ * 3. Shard ids and contact ids are packed into one long (see ShardedContactStore): the
+ *    shard in the high 32 bits, the id inside the shard in the low 32 bits*/
+
+public final class ShardRouter {
+
+    private ShardRouter(){}
+
+    //33-1: shard key:
+    public static String shardKey(Contact contact){
+        if (contact.getEmail() != null && !contact.getEmail().trim().isEmpty()) {
+            return normalizeEmail(contact.getEmail());
+        }
+        return (contact.getFirstName() + " " + contact.getLastName()).toLowerCase(Locale.ROOT);
+    }
+
+    public static String normalizeEmail(String email){
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    //33-2: key to shard:
+    public static int shardFor(String key, int shardCount){
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    public static int shardFor(Contact contact, int shardCount){
+        return shardFor(shardKey(contact), shardCount);
+    }
+
+    //33-3: shard + id in one long:
+    public static long globalId(int shard, int id){
+        return ((long) shard << 32) | (id & 0xffffffffL);
+    }
+
+    public static int shardOf(long globalId){
+        return (int) (globalId >>> 32);
+    }
+
+    public static int localId(long globalId){
+        return (int) globalId;
+    }
+}
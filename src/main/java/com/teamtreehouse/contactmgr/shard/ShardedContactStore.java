@@ -0,0 +1,248 @@
+package com.teamtreehouse.contactmgr.shard;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.AvailableSettings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//ENTRY 33
+/**Entry 33: Sharding
+ * Spreads contacts over N H2 database files instead of the single ./data/contactmgr:
+ * 1. One SessionFactory (with its own connection pool and cache regions) is built per
+ *    shard from hibernate.cfg.xml, only the url is different: urlPattern with %d replaced
+ *    by the shard number, by default ./data/contactmgr-shard0, -shard1, ...
+ * 2. save() sends the contact to the shard of its email (see ShardRouter) and returns a
+ *    global id: the shard and the id inside the shard packed into one long. All other
+ *    methods take that global id and go straight to the right shard
+ * 3. findByEmail() only asks the shard the email belongs to
+ * 4. update() keeps the contact on its shard, unless the new email belongs to another
+ *    shard: then the contact moves there and gets a new global id, which is returned
+ * 5. fetchAllContacts() and fanOut() run a query on all shards at the same time and merge
+ *    the results, shard 0 first
+ * 6. Every shard gets its own schema and second-level cache regions
+ *    (prefixed with shard<n>) so ids of different shards never mix. The prefixed regions
+ *    get the settings ehcache.xml has for the regions without prefix
+ * 7. close() closes all shards
+ * NOTE: the number of shards decides where each contact lives. To change it run
+ *       ShardRebalancer first, otherwise contacts are looked for on the wrong shard. The
+ *       search index of Application.search() and suggest() belongs to the single
+ *       database, writes to the shards never reach it*/
+
+public class ShardedContactStore implements AutoCloseable {
+    public static final String DEFAULT_URL_PATTERN = "jdbc:h2:./data/contactmgr-shard%d;QUERY_CACHE_SIZE=64";
+
+    //33-6: the regions configured in ehcache.xml:
+    private static final String[] CACHE_REGIONS = {
+            Contact.class.getName(),
+            Application.CONTACT_QUERY_REGION,
+            UpdateTimestampsCache.REGION_NAME
+    };
+
+    private final List<SessionFactory> shards;
+    private final ExecutorService executor;
+
+    public ShardedContactStore(int shardCount){
+        this(shardCount, DEFAULT_URL_PATTERN);
+    }
+
+    //33-1: one SessionFactory per shard, opened in parallel:
+    public ShardedContactStore(int shardCount, String urlPattern){
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "contact-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<SessionFactory>> opening = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            opening.add(executor.submit(() -> openShard(urlPattern, shard)));
+        }
+        this.shards = join(opening);
+    }
+
+    static SessionFactory openShard(String urlPattern, int shard){
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, String.format(urlPattern, shard));
+        settings.put("hibernate.hikari.poolName", "contactmgr-shard" + shard);
+        //33-6: separate cache regions per shard:
+        String prefix = "shard" + shard;
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, prefix);
+        configureCacheRegions(prefix);
+        return Application.builSessionFactory(settings);
+    }
+
+    //33-6: ehcache.xml only names the regions without prefix, any other region gets the
+    //      evicting defaultCache, which the timestamps region must never use. The default
+    //      query region has no prefix (Hibernate 5.2) and is added on demand, which fails
+    //      when two shards open at once, so it is added here first:
+    static void configureCacheRegions(String prefix){
+        CacheManager cacheManager = CacheManager.getInstance();
+        cacheManager.addCacheIfAbsent(StandardQueryCache.class.getName());
+        for (String region : CACHE_REGIONS) {
+            CacheConfiguration configuration = cacheManager.getCache(region).getCacheConfiguration()
+                    .clone()
+                    .name(prefix + "." + region);
+            cacheManager.addCacheIfAbsent(new Cache(configuration));
+        }
+    }
+
+    public int shardCount(){
+        return shards.size();
+    }
+
+    public SessionFactory sessionFactory(int shard){
+        return shards.get(shard);
+    }
+
+    //33-2: routed save:
+    public long save(Contact contact){
+        int shard = ShardRouter.shardFor(contact, shards.size());
+        int id = inTransaction(shard, session -> (int) session.save(contact));
+        return ShardRouter.globalId(shard, id);
+    }
+
+    public Contact findContactById(long globalId){
+        return read(ShardRouter.shardOf(globalId),
+                session -> session.get(Contact.class, ShardRouter.localId(globalId)));
+    }
+
+    //33-3: only the shard of the email:
+    public Contact findByEmail(String email){
+        int shard = ShardRouter.shardFor(ShardRouter.normalizeEmail(email), shards.size());
+        return read(shard, session -> session.createNamedQuery(Contact.FIND_BY_EMAIL, Contact.class)
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .uniqueResult());
+    }
+
+    //33-4: update in place or move to the new shard:
+    public long update(long globalId, Contact contact){
+        int shard = ShardRouter.shardOf(globalId);
+        int target = ShardRouter.shardFor(contact, shards.size());
+        contact.setId(ShardRouter.localId(globalId));
+        if (shard == target) {
+            inTransaction(shard, session -> session.merge(contact));
+            return globalId;
+        }
+        Contact moved = new Contact.ContactBuilder(contact.getFirstName(), contact.getLastName())
+                .withEmail(contact.getEmail())
+                .withPhone(contact.getPhone())
+                .build();
+        long newId = save(moved);
+        delete(globalId);
+        return newId;
+    }
+
+    public boolean delete(long globalId){
+        return inTransaction(ShardRouter.shardOf(globalId), session -> session
+                .createQuery("delete from Contact c where c.id = :id")
+                .setParameter("id", ShardRouter.localId(globalId))
+                .executeUpdate() > 0);
+    }
+
+    //33-5: all shards in parallel, keyed by global id:
+    public Map<Long, Contact> fetchAllContacts(){
+        Map<Long, Contact> contacts = new LinkedHashMap<>();
+        List<List<Contact>> perShard = fanOut((shard, factory) -> {
+            Session session = factory.openSession();
+            try {
+                return session.createQuery("from Contact c order by c.id", Contact.class).getResultList();
+            } finally {
+                session.close();
+            }
+        });
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            for (Contact contact : perShard.get(shard)) {
+                contacts.put(ShardRouter.globalId(shard, contact.getId()), contact);
+            }
+        }
+        return contacts;
+    }
+
+    //33-5: run a query on every shard, results in shard order:
+    public <T> List<T> fanOut(BiFunction<Integer, SessionFactory, T> query){
+        List<Future<T>> running = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            running.add(executor.submit(() -> query.apply(shard, shards.get(shard))));
+        }
+        return join(running);
+    }
+
+    private <T> T read(int shard, Function<Session, T> work){
+        Session session = shards.get(shard).openSession();
+        try {
+            return work.apply(session);
+        } finally {
+            session.close();
+        }
+    }
+
+    private <T> T inTransaction(int shard, Function<Session, T> work){
+        Session session = shards.get(shard).openSession();
+        try {
+            session.beginTransaction();
+            T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private static <T> List<T> join(List<Future<T>> futures){
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        }
+        return results;
+    }
+
+    //33-7: close every shard:
+    @Override
+    public void close(){
+        executor.shutdown();
+        for (SessionFactory shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.teamtreehouse.contactmgr;
+
+import com.teamtreehouse.contactmgr.metrics.ContactMetrics;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import com.teamtreehouse.contactmgr.pool.PoolMetrics;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.OptimisticLockException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//the static SessionFactory of Application, on an in-memory database for this class:
+public class ApplicationTest {
+    private static final String[] PROPERTIES = {
+            "hibernate.connection.url", "hibernate.hbm2ddl.auto", "hibernate.hikari.poolName",
+            ContactMetrics.ENABLED};
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("hibernate.connection.url", "jdbc:h2:mem:application-test;DB_CLOSE_DELAY=-1");
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("hibernate.hikari.poolName", "application-test");
+        System.setProperty(ContactMetrics.ENABLED, "true");
+        Application.getSessionFactory();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    public void updateFieldsChangesOnlyTheGivenFields() {
+        int id = Application.save(new ContactBuilder("Mary", "Smith").withEmail("mary@update.test").build());
+        long updates = count("UPDATE");
+
+        assertEquals(1, Application.updateFields(id, Collections.singletonMap("firstName", "Maria")));
+
+        Contact contact = Application.findContactById(id);
+        assertEquals("Maria", contact.getFirstName());
+        assertEquals("Smith", contact.getLastName());
+        assertEquals(1, contact.getVersion());
+        assertEquals(updates + 1, count("UPDATE"));
+    }
+
+    @Test
+    public void updateFieldsRefusesManagedFields() {
+        int id = Application.save(new ContactBuilder("Bob", "Smith").build());
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", 1);
+        fields.put("version", 5);
+        fields.put("changeVersion", 5L);
+        fields.put("phone", "not a number");
+
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            try {
+                Application.updateFields(id, Collections.singletonMap(field.getKey(), field.getValue()));
+                fail(field.getKey() + " must be refused");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertEquals(0, Application.findContactById(id).getVersion());
+    }
+
+    @Test
+    public void deleteWhereIsCounted() {
+        int id = Application.save(new ContactBuilder("Ann", "Lee").build());
+        long deletes = count("DELETE");
+
+        assertEquals(1, Application.deleteById(id));
+        assertEquals(0, Application.deleteById(id));
+
+        assertNull(Application.findContactById(id));
+        assertEquals(deletes + 2, count("DELETE"));
+    }
+
+    @Test
+    public void interruptStopsTheRetries() {
+        int id = Application.save(new ContactBuilder("Carl", "Jones").build());
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .withMaxAttempts(5)
+                .withInitialBackoff(1, TimeUnit.SECONDS)
+                .withMaxBackoff(1, TimeUnit.SECONDS)
+                .build();
+
+        try {
+            Application.updateWithRetry(id, contact -> {
+                Thread.currentThread().interrupt();
+                throw new OptimisticLockException("someone else was faster");
+            }, policy);
+            fail("An interrupted retry must throw");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void streamsCloseTheSessionWhenTheConsumerFails() {
+        Application.save(new ContactBuilder("Dora", "Day").build());
+
+        for (Runnable stream : new Runnable[]{
+                () -> Application.streamAllContacts(contact -> {
+                    throw new IllegalStateException("consumer failed");
+                }),
+                () -> Application.streamSummaries(summary -> {
+                    throw new IllegalStateException("consumer failed");
+                })}) {
+            try {
+                stream.run();
+                fail("The consumer failure must be thrown");
+            } catch (IllegalStateException expected) {
+            }
+            assertEquals(0, PoolMetrics.forPool("application-test").snapshot().getActive());
+        }
+    }
+
+    private static long count(String operation){
+        return Application.metrics().get(operation).getCount();
+    }
+}
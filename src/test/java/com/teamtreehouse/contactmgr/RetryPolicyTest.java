@@ -0,0 +1,80 @@
+package com.teamtreehouse.contactmgr;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void backoffGrowsUntilTheCap() {
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .withInitialBackoff(1, TimeUnit.MILLISECONDS)
+                .withMaxBackoff(10, TimeUnit.MILLISECONDS)
+                .withMultiplier(3)
+                .withJitter(0)
+                .build();
+
+        assertEquals(MILLIS, policy.backoffNanos(1));
+        assertEquals(3 * MILLIS, policy.backoffNanos(2));
+        assertEquals(9 * MILLIS, policy.backoffNanos(3));
+        assertEquals(10 * MILLIS, policy.backoffNanos(4));
+        assertEquals(10 * MILLIS, policy.backoffNanos(100));
+    }
+
+    @Test
+    public void jitterTakesAtMostItsShareAway() {
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .withInitialBackoff(8, TimeUnit.MILLISECONDS)
+                .withMaxBackoff(8, TimeUnit.MILLISECONDS)
+                .withJitter(0.5)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            long backoff = policy.backoffNanos(1);
+            assertTrue(backoff + " too short", backoff >= 4 * MILLIS);
+            assertTrue(backoff + " too long", backoff <= 8 * MILLIS);
+        }
+    }
+
+    @Test
+    public void invalidSettingsAreRefused() {
+        assertRefused(new RetryPolicy.RetryPolicyBuilder().withMaxAttempts(0));
+        assertRefused(new RetryPolicy.RetryPolicyBuilder().withInitialBackoff(-1, TimeUnit.MILLISECONDS));
+        assertRefused(new RetryPolicy.RetryPolicyBuilder()
+                .withInitialBackoff(10, TimeUnit.MILLISECONDS)
+                .withMaxBackoff(1, TimeUnit.MILLISECONDS));
+        assertRefused(new RetryPolicy.RetryPolicyBuilder().withMultiplier(0.5));
+        assertRefused(new RetryPolicy.RetryPolicyBuilder().withJitter(-0.1));
+        assertRefused(new RetryPolicy.RetryPolicyBuilder().withJitter(1.1));
+    }
+
+    @Test
+    public void interruptEndsTheBackoff() {
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .withInitialBackoff(10, TimeUnit.SECONDS)
+                .withMaxBackoff(10, TimeUnit.SECONDS)
+                .build();
+        long start = System.nanoTime();
+        Thread.currentThread().interrupt();
+        try {
+            policy.backoff(1);
+            fail("An interrupted backoff must throw");
+        } catch (InterruptedException expected) {
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static void assertRefused(RetryPolicy.RetryPolicyBuilder builder){
+        try {
+            builder.build();
+            fail("Must be refused: " + builder);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContactNormalizerTest {
+    @Test
+    public void emailIsTrimmedAndLowerCased() {
+        assertEquals("john@example.com", ContactNormalizer.normalizeEmail("  John@Example.COM "));
+        assertEquals("", ContactNormalizer.normalizeEmail(null));
+    }
+
+    @Test
+    public void phoneKeepsTheLastTenDigits() {
+        assertEquals(5551234567L, ContactNormalizer.normalizePhone(15551234567L));
+        assertEquals(5551234567L, ContactNormalizer.normalizePhone(5551234567L));
+        assertEquals(-1, ContactNormalizer.normalizePhone(0L));
+        assertEquals(-1, ContactNormalizer.normalizePhone(-5L));
+        assertEquals(-1, ContactNormalizer.normalizePhone(null));
+    }
+
+    @Test
+    public void nameIsLowerCasedWithoutAccentsAndPunctuation() {
+        assertEquals("jose", ContactNormalizer.normalizeName("Jos\u00e9"));
+        assertEquals("obrien", ContactNormalizer.normalizeName("O'Brien"));
+        assertEquals("vanderberg", ContactNormalizer.normalizeName("van der Berg-1"));
+        assertEquals("", ContactNormalizer.normalizeName(null));
+    }
+
+    @Test
+    public void nonLatinLettersAreKept() {
+        //Ivan, Wang:
+        assertEquals("\u0438\u0432\u0430\u043d", ContactNormalizer.normalizeName("\u0418\u0432\u0430\u043d"));
+        assertEquals("\u738b", ContactNormalizer.normalizeName("\u738b"));
+    }
+
+    @Test
+    public void soundexOfSimilarNamesIsEqual() {
+        assertEquals("S530", ContactNormalizer.soundex("smith"));
+        assertEquals("S530", ContactNormalizer.soundex("smyth"));
+        assertEquals("S530", ContactNormalizer.soundex("smithe"));
+        assertEquals("R163", ContactNormalizer.soundex("robert"));
+        assertEquals("R163", ContactNormalizer.soundex("rupert"));
+        assertEquals("T522", ContactNormalizer.soundex("tymczak"));
+        assertEquals("P236", ContactNormalizer.soundex("pfister"));
+        assertEquals("L000", ContactNormalizer.soundex("lee"));
+    }
+
+    @Test
+    public void soundexWithoutLatinFirstLetterIsEmpty() {
+        assertEquals("", ContactNormalizer.soundex(""));
+        assertEquals("", ContactNormalizer.soundex("\u0438\u0432\u0430\u043d"));
+    }
+
+    @Test
+    public void soundexSkipsNonLatinLetters() {
+        assertEquals("S530", ContactNormalizer.soundex("sm\u00f8ith"));
+    }
+}
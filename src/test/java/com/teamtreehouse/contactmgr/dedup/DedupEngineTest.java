@@ -0,0 +1,103 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DedupEngineTest {
+    private SessionFactory sessionFactory;
+    private DedupEngine engine;
+
+    @Before
+    public void setUp() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, "jdbc:h2:mem:dedup-test;DB_CLOSE_DELAY=-1");
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        settings.put("hibernate.hikari.poolName", "dedup-test");
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, "dedup-test");
+        sessionFactory = Application.builSessionFactory(settings);
+        engine = new DedupEngine.DedupBuilder(sessionFactory)
+                .withPartitions(4)
+                .withThreads(2)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void similarNamesWithTheSamePhoneAreMerged() throws Exception {
+        int john = save(new ContactBuilder("John", "Smith").withPhone(5551234567L).build());
+        int jon = save(new ContactBuilder("Jon", "Smyth").withPhone(15551234567L).build());
+        save(new ContactBuilder("Mary", "Jones").withPhone(5559876543L).build());
+
+        List<MergeCluster> clusters = engine.findClusters();
+
+        assertEquals(1, clusters.size());
+        assertEquals(john, clusters.get(0).getSurvivorId());
+        assertEquals(jon, (int) clusters.get(0).getDuplicateIds().get(0));
+    }
+
+    @Test
+    public void sameEmailIsMergedWhateverTheNames() throws Exception {
+        save(new ContactBuilder("John", "Smith").withEmail("js@example.com").build());
+        save(new ContactBuilder("J", "S").withEmail(" JS@example.com").build());
+
+        assertEquals(1, engine.findClusters().size());
+    }
+
+    @Test
+    public void differentNonLatinNamesWithTheSamePhoneAreNotMerged() throws Exception {
+        //Ivan Petrov and Wang Wei share a phone:
+        save(new ContactBuilder("\u0418\u0432\u0430\u043d", "\u041f\u0435\u0442\u0440\u043e\u0432")
+                .withPhone(5551234567L).build());
+        save(new ContactBuilder("\u4f1f", "\u738b").withPhone(5551234567L).build());
+
+        assertTrue(engine.findClusters().isEmpty());
+    }
+
+    @Test
+    public void equalNonLatinNamesWithTheSamePhoneAreMerged() throws Exception {
+        save(new ContactBuilder("\u0418\u0432\u0430\u043d", "\u041f\u0435\u0442\u0440\u043e\u0432")
+                .withPhone(5551234567L).build());
+        save(new ContactBuilder("\u0438\u0432\u0430\u043d", "\u043f\u0435\u0442\u0440\u043e\u0432")
+                .withPhone(5551234567L).build());
+
+        assertEquals(1, engine.findClusters().size());
+    }
+
+    @Test
+    public void contactsWithoutNamesAreNotMergedOnThePhone() throws Exception {
+        save(new ContactBuilder("", "").withPhone(5551234567L).build());
+        save(new ContactBuilder("-", "?").withPhone(5551234567L).build());
+
+        assertTrue(engine.findClusters().isEmpty());
+    }
+
+    private int save(Contact contact) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            int id = (int) session.save(contact);
+            session.getTransaction().commit();
+            return id;
+        } finally {
+            session.close();
+        }
+    }
+}
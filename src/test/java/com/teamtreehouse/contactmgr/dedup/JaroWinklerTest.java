@@ -0,0 +1,44 @@
+package com.teamtreehouse.contactmgr.dedup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JaroWinklerTest {
+    private static final double DELTA = 0.005;
+
+    @Test
+    public void equalStringsAreOne() {
+        assertEquals(1, JaroWinkler.similarity("smith", "smith"), 0);
+    }
+
+    @Test
+    public void emptyStringIsZero() {
+        assertEquals(0, JaroWinkler.similarity("", "smith"), 0);
+        assertEquals(0, JaroWinkler.similarity("smith", ""), 0);
+    }
+
+    @Test
+    public void nothingInCommonIsZero() {
+        assertEquals(0, JaroWinkler.similarity("abc", "xyz"), 0);
+    }
+
+    @Test
+    public void knownValues() {
+        assertEquals(0.961, JaroWinkler.similarity("martha", "marhta"), DELTA);
+        assertEquals(0.813, JaroWinkler.similarity("dixon", "dicksonx"), DELTA);
+        assertEquals(0.840, JaroWinkler.similarity("dwayne", "duane"), DELTA);
+    }
+
+    @Test
+    public void isSymmetric() {
+        assertEquals(JaroWinkler.similarity("dixon", "dicksonx"),
+                JaroWinkler.similarity("dicksonx", "dixon"), 0);
+    }
+
+    @Test
+    public void commonPrefixScoresHigher() {
+        assertTrue(JaroWinkler.similarity("johnson", "johnsen") > JaroWinkler.similarity("johnson", "jahnson"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.teamtreehouse.contactmgr.export;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContactExporterTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SessionFactory sessionFactory;
+    private int mary;
+    private int bob;
+
+    @Before
+    public void setUp() {
+        String name = "export-test" + DATABASES.incrementAndGet();
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "create");
+        settings.put("hibernate.hikari.poolName", name);
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, name);
+        sessionFactory = Application.builSessionFactory(settings);
+
+        mary = save(new ContactBuilder("Mary, Jane", "O\"Brien")
+                .withEmail("mary@x.com")
+                .withPhone(5551234567L)
+                .build());
+        bob = save(new ContactBuilder("Bob\nby", "back\\slash\ttab")
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void csvQuotesCommasQuotesAndLineBreaks() throws IOException {
+        assertEquals("id,firstName,lastName,email,phone\n"
+                + mary + ",\"Mary, Jane\",\"O\"\"Brien\",mary@x.com,5551234567\n"
+                + bob + ",\"Bob\nby\",back\\slash\ttab,,\n", export(ExportFormat.CSV));
+    }
+
+    @Test
+    public void ndjsonEscapesAndWritesNulls() throws IOException {
+        assertEquals("{\"id\":" + mary + ",\"firstName\":\"Mary, Jane\",\"lastName\":\"O\\\"Brien\","
+                + "\"email\":\"mary@x.com\",\"phone\":5551234567}\n"
+                + "{\"id\":" + bob + ",\"firstName\":\"Bob\\nby\",\"lastName\":\"back\\\\slash\\ttab\","
+                + "\"email\":null,\"phone\":null}\n", export(ExportFormat.NDJSON));
+    }
+
+    @Test
+    public void controlCharactersAreEscapedInNdjson() throws IOException {
+        int bell = save(new ContactBuilder("Ding\u0007", "Dong\r").build());
+
+        String json = export(ExportFormat.NDJSON);
+        assertEquals("{\"id\":" + bell + ",\"firstName\":\"Ding\\u0007\",\"lastName\":\"Dong\\r\","
+                + "\"email\":null,\"phone\":null}\n", json.substring(json.lastIndexOf('{')));
+    }
+
+    @Test
+    public void reusedBuffersDoNotLeakIntoShorterRows() throws IOException {
+        String longName = String.join("", Collections.nCopies(250, "x"));
+        int longRow = save(new ContactBuilder(longName, longName).build());
+        int shortRow = save(new ContactBuilder("Al", "Li").build());
+
+        String csv = export(ExportFormat.CSV);
+        assertEquals(longRow + "," + longName + "," + longName + ",,\n" + shortRow + ",Al,Li,,\n",
+                csv.substring(csv.indexOf(longRow + ",")));
+    }
+
+    @Test
+    public void gzipFileHoldsTheSameRows() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("contacts.csv.gz");
+
+        long rows = new ContactExporter(sessionFactory).export(file, ExportFormat.CSV, true);
+
+        assertEquals(2, rows);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            assertEquals(export(ExportFormat.CSV), new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private String export(ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ContactExporter(sessionFactory).export(out, format);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int save(Contact contact) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            int id = (int) session.save(contact);
+            session.getTransaction().commit();
+            return id;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.teamtreehouse.contactmgr.feed;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChangeFeedTest {
+    //the tombstone table and the sequence are not dropped with the mapped schema:
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private SessionFactory sessionFactory;
+    private ChangeFeed feed;
+
+    @Before
+    public void setUp() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, "jdbc:h2:mem:feed-test" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        settings.put("hibernate.hikari.poolName", "feed-test");
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, "feed-test");
+        sessionFactory = Application.builSessionFactory(settings);
+        feed = new ChangeFeed(sessionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void insertsUpdatesAndDeletesInVersionOrder() {
+        int first = save(new ContactBuilder("Ada", "Lovelace").build());
+        int second = save(new ContactBuilder("Alan", "Turing").build());
+        runInTransaction(session -> session.get(Contact.class, first).setFirstName("Augusta"));
+        runInTransaction(session -> session.delete(session.get(Contact.class, second)));
+
+        List<ContactChange> changes = feed.changesSince(0, 10);
+
+        assertEquals(2, changes.size());
+        assertEquals(ContactChange.Type.UPSERT, changes.get(0).getType());
+        assertEquals(first, changes.get(0).getId());
+        assertEquals("Augusta", changes.get(0).getContact().getFirstName());
+        assertEquals(ContactChange.Type.DELETE, changes.get(1).getType());
+        assertEquals(second, changes.get(1).getId());
+        assertTrue(changes.get(0).getVersion() < changes.get(1).getVersion());
+        assertTrue(feed.changesSince(changes.get(1).getVersion(), 10).isEmpty());
+    }
+
+    @Test
+    public void openTransactionHoldsBackLaterCommits() {
+        Session slow = sessionFactory.openSession();
+        try {
+            slow.beginTransaction();
+            slow.save(new ContactBuilder("Slow", "Writer").build());
+            slow.flush();
+
+            save(new ContactBuilder("Fast", "Writer").build());
+            //the fast one has the higher version, a checkpoint on it would skip the slow one:
+            assertTrue(feed.changesSince(0, 10).isEmpty());
+
+            slow.getTransaction().commit();
+        } finally {
+            slow.close();
+        }
+        List<ContactChange> changes = feed.changesSince(0, 10);
+        assertEquals(2, changes.size());
+        assertEquals("Slow", changes.get(0).getContact().getFirstName());
+        assertEquals("Fast", changes.get(1).getContact().getFirstName());
+    }
+
+    @Test
+    public void committedTransactionOfAReusedConnectionDoesNotHoldBackTheFeed() {
+        Session reused = sessionFactory.openSession();
+        try {
+            reused.doWork(connection -> {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("INSERT INTO CONTACT(ID, FIRSTNAME, LASTNAME) VALUES (1000001, 'First', 'Transaction')");
+                    connection.commit();
+                    //same H2 session, next transaction:
+                    statement.execute("INSERT INTO CONTACT(ID, FIRSTNAME, LASTNAME) VALUES (1000002, 'Second', 'Transaction')");
+                }
+                save(new ContactBuilder("Fast", "Writer").build());
+
+                List<ContactChange> changes = feed.changesSince(0, 10);
+                assertEquals(1, changes.size());
+                assertEquals("First", changes.get(0).getContact().getFirstName());
+                connection.commit();
+            });
+        } finally {
+            reused.close();
+        }
+        assertEquals(3, feed.changesSince(0, 10).size());
+    }
+
+    @Test
+    public void rolledBackTransactionDoesNotHoldBackTheFeed() {
+        Session failed = sessionFactory.openSession();
+        try {
+            failed.beginTransaction();
+            failed.save(new ContactBuilder("Rolled", "Back").build());
+            failed.flush();
+            failed.getTransaction().rollback();
+        } finally {
+            failed.close();
+        }
+        save(new ContactBuilder("Kept", "Contact").build());
+
+        List<ContactChange> changes = feed.changesSince(0, 10);
+        assertEquals(1, changes.size());
+        assertEquals("Kept", changes.get(0).getContact().getFirstName());
+    }
+
+    @Test
+    public void triggerNeedsTheChangeVersionColumn() {
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE NO_VERSION(ID INT PRIMARY KEY)");
+                    statement.execute("CREATE TRIGGER NO_VERSION_CHANGE BEFORE INSERT ON NO_VERSION"
+                            + " FOR EACH ROW CALL \"" + ChangeVersionTrigger.class.getName() + "\"");
+                    fail("Trigger created on a table without CHANGEVERSION");
+                } catch (SQLException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("CHANGEVERSION"));
+                }
+            });
+        } finally {
+            session.close();
+        }
+    }
+
+    private int save(Contact contact) {
+        return inTransaction(session -> (int) session.save(contact));
+    }
+
+    private <T> T inTransaction(Function<Session, T> work) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        } finally {
+            session.close();
+        }
+    }
+
+    private void runInTransaction(Consumer<Session> work) {
+        inTransaction(session -> {
+            work.accept(session);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContactImporterTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private SessionFactory sessionFactory;
+
+    @Before
+    public void setUp() {
+        String name = "import-test" + DATABASES.incrementAndGet();
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "create");
+        settings.put("hibernate.hikari.poolName", name);
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, name);
+        settings.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        settings.put(AvailableSettings.USE_QUERY_CACHE, "true");
+        sessionFactory = Application.builSessionFactory(settings);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void badRowsAreRejectedAndTheRestImported() throws IOException {
+        List<String> rejected = new ArrayList<>();
+        ImportReport report = importer(rejected).importFrom(new StringReader("firstName,lastName,email\n"
+                + "Ann,Lee,ann@x.com\n"
+                + "\"Bob,Smith,bob@x.com\n"
+                + "Carl,Jones,carl@x.com\n"
+                //too long for the column, fails the transaction:
+                + "Dora" + String.join("", Collections.nCopies(300, "a")) + ",Day,dora@x.com\n"
+                //emails are not unique:
+                + "Eve,Day,ann@x.com\n"), ImportFormat.CSV);
+
+        assertEquals(5, report.getRead());
+        assertEquals(3, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals(2, rejected.size());
+    }
+
+    @Test
+    public void cachedQueriesSeeImportedContacts() throws IOException {
+        assertEquals(0, cachedCount());
+
+        importer(new ArrayList<>()).importFrom(new StringReader("firstName,lastName\nAnn,Lee\nBob,Smith\n"),
+                ImportFormat.CSV);
+
+        assertEquals(2, cachedCount());
+    }
+
+    private ContactImporter importer(List<String> rejected){
+        return new ContactImporter.ImporterBuilder(sessionFactory)
+                .withParserThreads(2)
+                .withRejectListener((record, reason) -> rejected.add(record))
+                .build();
+    }
+
+    private int cachedCount(){
+        Session session = sessionFactory.openSession();
+        try {
+            return session.createQuery("from Contact", Contact.class)
+                    .setCacheable(true)
+                    .setCacheRegion(Application.CONTACT_QUERY_REGION)
+                    .list()
+                    .size();
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CsvRecordReaderTest {
+    @Test
+    public void columnsAreFoundByName() throws IOException {
+        CsvRecordReader reader = reader("Phone,E Mail,last_name,FirstName\n5551234567,moo@x.com,Smith,Mary\n");
+
+        Contact contact = reader.parse(reader.next());
+
+        assertEquals("Mary", contact.getFirstName());
+        assertEquals("Smith", contact.getLastName());
+        assertEquals("moo@x.com", contact.getEmail());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        CsvRecordReader reader = reader("firstName,lastName\n"
+                + "\"Mary, Jane\",\"O\"\"Brien\"\n"
+                + "\"Bob\nby\",Smith\n"
+                + "Ann,Lee\n");
+
+        Contact mary = reader.parse(reader.next());
+        assertEquals("Mary, Jane", mary.getFirstName());
+        assertEquals("O\"Brien", mary.getLastName());
+        assertEquals("Bob\nby", reader.parse(reader.next()).getFirstName());
+        assertEquals("Ann", reader.parse(reader.next()).getFirstName());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void blankLinesAreSkipped() throws IOException {
+        CsvRecordReader reader = reader("firstName,lastName\n\n  \nAnn,Lee\n\n");
+
+        assertEquals("Ann,Lee", reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void unclosedQuoteCostsOneRowOnly() throws IOException {
+        StringBuilder file = new StringBuilder("firstName,lastName\n\"Mary,Smith\n");
+        for (int i = 0; i < CsvRecordReader.MAX_RECORD_LINES + 10; i++) {
+            file.append("First").append(i).append(",Last").append(i).append('\n');
+        }
+        CsvRecordReader reader = reader(file.toString());
+
+        String broken = reader.next();
+        assertEquals("\"Mary,Smith", broken);
+        try {
+            reader.parse(broken);
+            fail("The open quote must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        List<String> rest = rest(reader);
+        assertEquals(CsvRecordReader.MAX_RECORD_LINES + 10, rest.size());
+        assertEquals("First0,Last0", rest.get(0));
+    }
+
+    @Test
+    public void unclosedQuoteAtTheEndIsReadAgainLineByLine() throws IOException {
+        CsvRecordReader reader = reader("firstName,lastName\nAnn,Lee\n\"Bob,Smith\nCarl,Jones\n");
+
+        assertEquals("Ann,Lee", reader.next());
+        assertEquals("\"Bob,Smith", reader.next());
+        assertEquals("Carl,Jones", reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void headerNeedsAName() throws IOException {
+        reader("email,phone\n");
+    }
+
+    private static CsvRecordReader reader(String csv) throws IOException {
+        return new CsvRecordReader(new BufferedReader(new StringReader(csv)));
+    }
+
+    private static List<String> rest(CsvRecordReader reader) throws IOException {
+        List<String> records = new ArrayList<>();
+        String record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
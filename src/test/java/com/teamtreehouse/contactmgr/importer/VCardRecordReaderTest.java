@@ -0,0 +1,100 @@
+package com.teamtreehouse.contactmgr.importer;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class VCardRecordReaderTest {
+    @Test
+    public void cardsAreReadOneByOne() throws IOException {
+        VCardRecordReader reader = reader("BEGIN:VCARD\nVERSION:3.0\nN:Smith;Mary;;;\n"
+                + "item1.EMAIL;TYPE=work:mary@x.com\nTEL:+1 555 123 4567\nEND:VCARD\n"
+                + "BEGIN:VCARD\nFN:Bob van Dyke\nEND:VCARD\n");
+
+        Contact mary = reader.parse(reader.next());
+        assertEquals("Mary", mary.getFirstName());
+        assertEquals("Smith", mary.getLastName());
+        assertEquals("mary@x.com", mary.getEmail());
+        Contact bob = reader.parse(reader.next());
+        assertEquals("Bob van", bob.getFirstName());
+        assertEquals("Dyke", bob.getLastName());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void foldedLinesAreJoined() throws IOException {
+        VCardRecordReader reader = reader("BEGIN:VCARD\nN:Smi\n th;Ma\n\try\nEND:VCARD\n");
+
+        Contact contact = reader.parse(reader.next());
+        assertEquals("Mary", contact.getFirstName());
+        assertEquals("Smith", contact.getLastName());
+    }
+
+    @Test
+    public void cardWithoutEndIsRejected() throws IOException {
+        VCardRecordReader reader = reader("BEGIN:VCARD\nN:Smith;Mary\n");
+
+        assertRejected(reader, reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void nestedBeginRejectsTheOpenCardAndKeepsTheNextOne() throws IOException {
+        VCardRecordReader reader = reader("BEGIN:VCARD\nN:Smith;Mary\n"
+                + "BEGIN:VCARD\nN:Lee;Ann\nEND:VCARD\n");
+
+        assertRejected(reader, reader.next());
+        assertEquals("Ann", reader.parse(reader.next()).getFirstName());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void tooLongCardCostsOneRecordOnly() throws IOException {
+        StringBuilder file = new StringBuilder("BEGIN:VCARD\nN:Smith;Mary\n");
+        for (int i = 0; i < RecordReader.MAX_RECORD_LINES * 3; i++) {
+            file.append("NOTE:line ").append(i).append('\n');
+        }
+        file.append("END:VCARD\nBEGIN:VCARD\nN:Lee;Ann\nEND:VCARD\n");
+        VCardRecordReader reader = reader(file.toString());
+
+        String broken = reader.next();
+        assertEquals(RecordReader.MAX_RECORD_LINES, broken.split("\n").length);
+        assertRejected(reader, broken);
+        assertEquals("Ann", reader.parse(reader.next()).getFirstName());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void foldedLinesCountAgainstTheLimit() throws IOException {
+        StringBuilder file = new StringBuilder("BEGIN:VCARD\nNOTE:x\n");
+        for (int i = 0; i < RecordReader.MAX_RECORD_LINES * 3; i++) {
+            file.append(" more\n");
+        }
+        file.append("END:VCARD\nBEGIN:VCARD\nN:Lee;Ann\nEND:VCARD\n");
+        VCardRecordReader reader = reader(file.toString());
+
+        assertRejected(reader, reader.next());
+        assertEquals("Ann", reader.parse(reader.next()).getFirstName());
+        assertNull(reader.next());
+    }
+
+    private static void assertRejected(VCardRecordReader reader, String record) {
+        try {
+            reader.parse(record);
+            fail("parsed " + record);
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Card is not closed with END:VCARD", expected.getMessage());
+        }
+    }
+
+    private static VCardRecordReader reader(String file) {
+        return new VCardRecordReader(new BufferedReader(new StringReader(file)));
+    }
+}
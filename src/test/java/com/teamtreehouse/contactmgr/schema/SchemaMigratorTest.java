@@ -0,0 +1,113 @@
+package com.teamtreehouse.contactmgr.schema;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SchemaMigratorTest {
+    @Test
+    public void sequenceIsMovedPastIdsSavedBeforeIt() {
+        //ids written without the sequence, like the IDENTITY column did:
+        SessionFactory before = open("create", "schema-test-before");
+        try {
+            Session session = before.openSession();
+            try {
+                session.doWork(connection -> {
+                    try (PreparedStatement insert = connection.prepareStatement(
+                            "INSERT INTO CONTACT(ID, FIRSTNAME, LASTNAME) VALUES (?, 'First', 'Last')")) {
+                        for (int id = 1; id <= 120; id++) {
+                            insert.setInt(1, id);
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                    connection.commit();
+                });
+            } finally {
+                session.close();
+            }
+        } finally {
+            before.close();
+        }
+
+        SessionFactory after = open("update", "schema-test-after");
+        try {
+            assertEquals(121, save(after, "first"));
+            assertEquals(122, save(after, "second"));
+        } finally {
+            after.close();
+        }
+    }
+
+    @Test
+    public void emailUniqueConstraintOfOldDatabasesIsDropped() {
+        SessionFactory before = open("create", "schema-test-unique-before", "schema-test-unique");
+        try {
+            Session session = before.openSession();
+            try {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        //what hbm2ddl created for @NaturalId:
+                        statement.execute("ALTER TABLE CONTACT ADD CONSTRAINT UK_OLD_EMAIL UNIQUE(EMAIL)");
+                    }
+                    connection.commit();
+                });
+            } finally {
+                session.close();
+            }
+        } finally {
+            before.close();
+        }
+
+        SessionFactory after = open("update", "schema-test-unique-after", "schema-test-unique");
+        try {
+            save(after, "same@example.com");
+            save(after, "same@example.com");
+            Session session = after.openSession();
+            try {
+                assertEquals(2L, session.createQuery("select count(c) from Contact c where c.email = :email", Long.class)
+                        .setParameter("email", "same@example.com")
+                        .getSingleResult().longValue());
+            } finally {
+                session.close();
+            }
+        } finally {
+            after.close();
+        }
+    }
+
+    private static SessionFactory open(String hbm2ddl, String name) {
+        return open(hbm2ddl, name, "schema-test");
+    }
+
+    private static SessionFactory open(String hbm2ddl, String name, String database) {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        settings.put(AvailableSettings.HBM2DDL_AUTO, hbm2ddl);
+        settings.put("hibernate.hikari.poolName", name);
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, name);
+        return Application.builSessionFactory(settings);
+    }
+
+    private static int save(SessionFactory factory, String email) {
+        Session session = factory.openSession();
+        try {
+            session.beginTransaction();
+            int id = (int) session.save(new ContactBuilder("New", "Contact").withEmail(email).build());
+            session.getTransaction().commit();
+            return id;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.teamtreehouse.contactmgr.search;
+
+import com.teamtreehouse.contactmgr.Application;
+import com.teamtreehouse.contactmgr.feed.ChangeFeed;
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import com.teamtreehouse.contactmgr.model.ContactSummary;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContactSearchTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private SessionFactory sessionFactory;
+    private ContactSearch search;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        String name = "search-test" + DATABASES.incrementAndGet();
+        sessionFactory = sessionFactory("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", name);
+        search = new ContactSearch(sessionFactory, new ChangeFeed(sessionFactory));
+    }
+
+    @After
+    public void tearDown() {
+        search.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void suggestFollowsSavesUpdatesAndDeletes() {
+        int mary = save(new ContactBuilder("Mary", "Smith").build());
+        save(new ContactBuilder("Bob", "Smithers").build());
+        search.refresh();
+        assertEquals(Arrays.asList("Mary", "Bob"), firstNames(search.suggest("smith", 10)));
+
+        inTransaction(session -> session.get(Contact.class, mary).setLastName("Jones"));
+        search.refresh();
+        assertEquals(Arrays.asList("Bob"), firstNames(search.suggest("smith", 10)));
+        assertEquals(Arrays.asList("Mary"), firstNames(search.suggest("jon", 10)));
+
+        inTransaction(session -> session.delete(session.get(Contact.class, mary)));
+        search.refresh();
+        assertTrue(search.suggest("jon", 10).isEmpty());
+    }
+
+    @Test
+    public void rolledBackWritesDoNotReachSuggestOrSearch() {
+        int mary = save(new ContactBuilder("Mary", "Smith").build());
+        search.refresh();
+
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            session.get(Contact.class, mary).setLastName("Rollback");
+            session.save(new ContactBuilder("Ghost", "Rollback").build());
+            session.flush();
+            session.getTransaction().rollback();
+        } finally {
+            session.close();
+        }
+        search.refresh();
+
+        assertTrue(search.suggest("rollback", 10).isEmpty());
+        assertEquals(Arrays.asList("Mary"), firstNames(search.suggest("smith", 10)));
+        assertTrue(search.search("rollback", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void deletedContactsDoNotShortenThePage() {
+        for (int i = 0; i < 10; i++) {
+            save(new ContactBuilder("Ann" + i, "Lee").build());
+        }
+        search.refresh();
+        //deleted without tombstones (as if pruned), the index keeps their ids:
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DELETE FROM CONTACT WHERE FIRSTNAME IN ('Ann0', 'Ann1', 'Ann2')");
+                    statement.execute("DELETE FROM CONTACT_TOMBSTONE");
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+
+        List<ContactSummary> page = search.suggest("lee", 5);
+        assertEquals(5, page.size());
+        assertFalse(firstNames(page).contains("Ann0"));
+    }
+
+    @Test
+    public void searchPagesOverCheckedHits() {
+        for (int i = 0; i < 7; i++) {
+            save(new ContactBuilder("Page" + i, "Walker").build());
+        }
+        search.refresh();
+
+        List<ContactSummary> first = search.search("walker", 0, 3);
+        List<ContactSummary> second = search.search("walker", 3, 3);
+        List<ContactSummary> third = search.search("walker", 6, 3);
+
+        assertEquals(3, first.size());
+        assertEquals(3, second.size());
+        assertEquals(1, third.size());
+        assertTrue(search.search("walker", 7, 3).isEmpty());
+    }
+
+    @Test
+    public void installDropsH2FullTextIndex() {
+        //a database from before: H2's Lucene full-text index on CONTACT:
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE ALIAS IF NOT EXISTS FTL_INIT FOR \"org.h2.fulltext.FullTextLucene.init\"");
+                    statement.execute("CALL FTL_INIT()");
+                    statement.execute("CALL FTL_CREATE_INDEX('PUBLIC', 'CONTACT', 'FIRSTNAME,LASTNAME,EMAIL')");
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+
+        ContactSearch.install(sessionFactory);
+        save(new ContactBuilder("Mary", "Smith").build());
+        search.refresh();
+
+        session = sessionFactory.openSession();
+        try {
+            assertEquals(0, ((Number) session.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA"
+                    + " WHERE SCHEMA_NAME = 'FTL'").getSingleResult()).intValue());
+            assertEquals(0, ((Number) session.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.FUNCTION_ALIASES"
+                    + " WHERE ALIAS_NAME LIKE 'FTL_%'").getSingleResult()).intValue());
+        } finally {
+            session.close();
+        }
+        assertEquals(Arrays.asList("Mary"), firstNames(search.search("smi", 0, 10)));
+    }
+
+    @Test
+    public void changesShowUpWithoutRefresh() throws InterruptedException {
+        save(new ContactBuilder("Mary", "Smith").build());
+
+        //the refresh thread polls every 100 ms:
+        long deadline = System.currentTimeMillis() + 10000;
+        while (search.suggest("smith", 10).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(Arrays.asList("Mary"), firstNames(search.suggest("smith", 10)));
+    }
+
+    @Test
+    public void restartReplaysTheChangesSinceTheLastCommit() throws IOException {
+        tearDown();
+        File database = temporaryFolder.newFolder("db");
+        sessionFactory = sessionFactory("jdbc:h2:" + new File(database, "contactmgr").getAbsolutePath(), "search-file-test");
+        search = new ContactSearch(sessionFactory, new ChangeFeed(sessionFactory));
+        save(new ContactBuilder("Mary", "Smith").build());
+        int bob = save(new ContactBuilder("Bob", "Smith").build());
+        search.refresh();
+        search.close();
+        assertTrue(new File(database, "contactmgr.search").isDirectory());
+
+        //while stopped: a delete whose tombstone is pruned and a new contact:
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DELETE FROM CONTACT WHERE ID = " + bob);
+                    statement.execute("DELETE FROM CONTACT_TOMBSTONE");
+                }
+                connection.commit();
+            });
+        } finally {
+            session.close();
+        }
+        save(new ContactBuilder("Carol", "Smith").build());
+
+        search = new ContactSearch(sessionFactory, new ChangeFeed(sessionFactory));
+        search.refresh();
+        assertEquals(Arrays.asList("Carol"), firstNames(search.search("carol", 0, 10)));
+        //replayed, not built from the table again, which would have dropped Bob:
+        assertEquals(3, search.fullTextIndex().size());
+        assertEquals(Arrays.asList("Mary", "Carol"), firstNames(search.suggest("smith", 10)));
+    }
+
+    @Test
+    public void termsFollowTheAnalyzer() {
+        assertEquals(Arrays.asList("o", "brien", "mary"), ContactSearch.terms("O'Brien the Mary,"));
+        assertFalse(ContactSearch.containsAll(new ContactSummary(1, "Mary", "O'Brien", "mob@example.com"),
+                ContactSearch.terms("obrien mob@ex")));
+        assertTrue(ContactSearch.containsAll(new ContactSummary(1, "Mary", "O'Brien", "mob@example.com"),
+                ContactSearch.terms("brien mob@ex")));
+    }
+
+    private static SessionFactory sessionFactory(String url, String name) {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(AvailableSettings.URL, url);
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "create");
+        settings.put("hibernate.hikari.poolName", name);
+        settings.put(AvailableSettings.CACHE_REGION_PREFIX, name);
+        return Application.builSessionFactory(settings);
+    }
+
+    private static List<String> firstNames(List<ContactSummary> summaries) {
+        return summaries.stream().map(ContactSummary::getFirstName).collect(Collectors.toList());
+    }
+
+    private int save(Contact contact) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            int id = (int) session.save(contact);
+            session.getTransaction().commit();
+            return id;
+        } finally {
+            session.close();
+        }
+    }
+
+    private void inTransaction(Consumer<Session> work) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            work.accept(session);
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.teamtreehouse.contactmgr.search;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class FullTextIndexTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void changesShowAfterRefresh() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Mary", "Smith", null);
+
+        assertEquals(Collections.emptyList(), index.ids("mary", 0, 10));
+        index.refresh();
+        assertEquals(Collections.singletonList(1), index.ids("mary", 0, 10));
+    }
+
+    @Test
+    public void putReplacesAndRemoveDeletes() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Mary", "Smith", null);
+        index.put(2, "Mary", "Jones", null);
+        index.put(1, "Mary", "Brown", null);
+        index.remove(2);
+        index.remove(42);
+        index.refresh();
+
+        assertEquals(Collections.emptyList(), index.ids("smith", 0, 10));
+        assertEquals(Collections.singletonList(1), index.ids("brown", 0, 10));
+        assertEquals(Collections.singletonList(1), index.ids("mary", 0, 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void wholeWordsRankBeforePrefixes() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Johnson", "Smith", null);
+        index.put(2, "John", "Doe", null);
+        index.refresh();
+
+        assertEquals(Arrays.asList(2, 1), index.ids(ContactSearch.toLuceneQuery("john"), 0, 10));
+    }
+
+    @Test
+    public void offsetAndLimitPage() {
+        FullTextIndex index = new FullTextIndex();
+        for (int id = 1; id <= 5; id++) {
+            index.put(id, "Ann", "Lee", null);
+        }
+        index.refresh();
+
+        assertEquals(5, index.ids("ann", 0, 10).size());
+        assertEquals(2, index.ids("ann", 0, 2).size());
+        assertEquals(1, index.ids("ann", 4, 2).size());
+        assertEquals(Collections.emptyList(), index.ids("ann", 0, 0));
+    }
+
+    @Test
+    public void emailIsOneWord() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Ada", "Lovelace", "countess@example.com");
+        index.put(2, "Ada", "Byron", "byron@example.com");
+        index.refresh();
+
+        assertEquals(Collections.singletonList(1), index.ids(ContactSearch.toLuceneQuery("countess@example.com"), 0, 10));
+        assertEquals(Collections.singletonList(1), index.ids(ContactSearch.toLuceneQuery("countess@ex"), 0, 10));
+    }
+
+    @Test
+    public void shortAndLongPrefixesMatch() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Bartholomew", "Featherstonehaugh", "featherstonehaugh.family@example.com");
+        index.put(2, "Bart", "Simpson", null);
+        index.refresh();
+
+        assertEquals(2, index.ids(ContactSearch.toLuceneQuery("b"), 0, 10).size());
+        assertEquals(Collections.singletonList(1), index.ids(ContactSearch.toLuceneQuery("barth"), 0, 10));
+        //longer than the indexed prefixes:
+        assertEquals(Collections.singletonList(1), index.ids(ContactSearch.toLuceneQuery("featherstonehaugh.fam"), 0, 10));
+        assertEquals(Collections.emptyList(), index.ids(ContactSearch.toLuceneQuery("featherstonehaugh.fax"), 0, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidQueryIsRejected() {
+        new FullTextIndex().ids("+(", 0, 10);
+    }
+
+    @Test
+    public void optimizeLeavesOneSegment() {
+        FullTextIndex index = new FullTextIndex();
+        for (int id = 1; id <= 50; id++) {
+            index.put(id, "Ann" + id, "Lee", null);
+            index.refresh();
+        }
+
+        index.optimize();
+        assertEquals(1, index.segments());
+        assertEquals(50, index.size());
+    }
+
+    @Test
+    public void commitKeepsTheChangeVersionOnDisk() throws IOException {
+        Directory directory = FSDirectory.open(temporaryFolder.newFolder());
+        FullTextIndex index = new FullTextIndex(directory);
+        assertEquals(-1, index.committedVersion());
+        index.put(1, "Mary", "Smith", null);
+        index.commit(7);
+        index.put(2, "Bob", "Smith", null);
+        index.close();
+
+        //what came after the commit is gone:
+        index = new FullTextIndex(directory);
+        assertEquals(7, index.committedVersion());
+        assertEquals(Collections.singletonList(1), index.ids("smith", 0, 10));
+        assertEquals(Collections.singletonList(1), index.prefixIds("smi", 10));
+        index.close();
+    }
+
+    @Test
+    public void indexOfAnotherFormatIsThrownAway() throws IOException {
+        Directory directory = FSDirectory.open(temporaryFolder.newFolder());
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(FullTextIndex.VERSION, null));
+        writer.commit(Collections.singletonMap("changeVersion", "7"));
+        writer.close();
+
+        FullTextIndex index = new FullTextIndex(directory);
+        assertEquals(-1, index.committedVersion());
+        assertEquals(0, index.size());
+        index.close();
+    }
+}
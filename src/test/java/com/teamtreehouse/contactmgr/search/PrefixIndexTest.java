@@ -0,0 +1,93 @@
+package com.teamtreehouse.contactmgr.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixIndexTest {
+    @Test
+    public void exactMatchComesBeforeLongerCompletions() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Johnson", "Smith", null);
+        index.put(2, "John", "Doe", null);
+        index.put(3, "Jo", "March", null);
+        index.refresh();
+
+        assertEquals(Arrays.asList(3, 2, 1), index.prefixIds("jo", 10));
+    }
+
+    @Test
+    public void completionsComeInAlphabeticalOrder() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Joe", "Smith", null);
+        index.put(2, "Joanne", "Doe", null);
+        index.put(3, "Johnson", "March", null);
+        index.refresh();
+
+        //"joanne" is longer than "joe" but sorts first:
+        assertEquals(Arrays.asList(2, 1, 3), index.prefixIds("jo", 10));
+    }
+
+    @Test
+    public void stopsAtTheLimit() {
+        FullTextIndex index = new FullTextIndex();
+        for (int id = 1; id <= 5; id++) {
+            index.put(id, "Ann" + id, "Lee", null);
+        }
+        index.refresh();
+
+        assertEquals(Arrays.asList(1, 2), index.prefixIds("ann", 2));
+        assertEquals(Collections.emptyList(), index.prefixIds("ann", 0));
+        assertEquals(Collections.emptyList(), index.prefixIds(" ", 10));
+    }
+
+    @Test
+    public void emailAndItsLocalPartAreWords() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Ada", "Lovelace", "countess@example.com");
+        index.refresh();
+
+        assertEquals(Collections.singletonList(1), index.prefixIds("count", 10));
+        assertEquals(Collections.singletonList(1), index.prefixIds("COUNTESS@EX", 10));
+    }
+
+    @Test
+    public void putReplacesTheOldWords() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Mary", "Smith", null);
+        index.put(1, "Mary", "Jones", null);
+        index.refresh();
+
+        assertEquals(Collections.emptyList(), index.prefixIds("smi", 10));
+        assertEquals(Collections.singletonList(1), index.prefixIds("jon", 10));
+        assertEquals(Collections.singletonList(1), index.prefixIds("mary", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void removeDropsTheContact() {
+        FullTextIndex index = new FullTextIndex();
+        index.put(1, "Mary", "Smith", null);
+        index.put(2, "Mary", "Jones", null);
+        index.remove(1);
+        index.remove(42);
+        index.refresh();
+
+        assertEquals(Collections.singletonList(2), index.prefixIds("mary", 10));
+        assertEquals(Collections.emptyList(), index.prefixIds("smith", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void matchesChecksEveryWord() {
+        assertTrue(PrefixIndex.matches("SMI", "Mary", "Smith", null));
+        assertTrue(PrefixIndex.matches("mary.s", "Mary", "Jones", "mary.s@example.com"));
+        assertFalse(PrefixIndex.matches("ith", "Mary", "Smith", null));
+        assertFalse(PrefixIndex.matches("", "Mary", "Smith", null));
+    }
+}
@@ -0,0 +1,147 @@
+package com.teamtreehouse.contactmgr.shard;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import net.sf.ehcache.CacheManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardRebalancerTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Test
+    public void movesContactsToTheirNewShard() {
+        String urlPattern = urlPattern();
+        List<Contact> contacts = contacts(20);
+        try (ShardedContactStore store = new ShardedContactStore(1, urlPattern)) {
+            contacts.forEach(store::save);
+        }
+
+        long moved = ShardRebalancer.rebalance(urlPattern, 1, 2);
+
+        try (ShardedContactStore store = new ShardedContactStore(2, urlPattern)) {
+            assertEquals(onShard(contacts, 1), moved);
+            assertPlaced(store, contacts);
+        }
+    }
+
+    @Test
+    public void resumesAfterStoppingBetweenInsertAndDelete() {
+        String urlPattern = urlPattern();
+        List<Contact> contacts = contacts(20);
+        //one with and one without email that were inserted on shard 1 but not deleted on 0:
+        List<Contact> copied = new ArrayList<>();
+        for (Contact contact : contacts) {
+            if (ShardRouter.shardFor(contact, 2) == 1 && copied.size() < 2) {
+                copied.add(contact);
+            }
+        }
+        assertEquals(2, copied.size());
+        try (ShardedContactStore store = new ShardedContactStore(1, urlPattern)) {
+            contacts.forEach(store::save);
+        }
+        SessionFactory target = ShardedContactStore.openShard(urlPattern, 1);
+        StatelessSession session = target.openStatelessSession();
+        try {
+            session.beginTransaction();
+            session.createNativeQuery("CREATE TABLE CONTACT_REBALANCE("
+                    + "SOURCESHARD INT NOT NULL, SOURCEID INT NOT NULL, PRIMARY KEY(SOURCESHARD, SOURCEID))")
+                    .executeUpdate();
+            for (Contact contact : copied) {
+                int sourceId = contact.getId();
+                session.insert(new ContactBuilder(contact.getFirstName(), contact.getLastName())
+                        .withEmail(contact.getEmail())
+                        .withPhone(contact.getPhone())
+                        .build());
+                session.createNativeQuery("INSERT INTO CONTACT_REBALANCE VALUES (0, :id)")
+                        .setParameter("id", sourceId)
+                        .executeUpdate();
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+            target.close();
+        }
+
+        long moved = ShardRebalancer.rebalance(urlPattern, 1, 2);
+
+        try (ShardedContactStore store = new ShardedContactStore(2, urlPattern)) {
+            //the two copied before only get deleted:
+            assertEquals(onShard(contacts, 1) - copied.size(), moved);
+            assertPlaced(store, contacts);
+            //the progress is dropped once the rebalance is done:
+            assertTrue(store.fanOut((shard, factory) -> tableExists(factory, "CONTACT_REBALANCE"))
+                    .stream().noneMatch(exists -> exists));
+        }
+    }
+
+    @Test
+    public void shardTimestampsRegionIsNeverEvicted() {
+        ShardedContactStore.configureCacheRegions("shard-test");
+
+        assertTrue(CacheManager.getInstance()
+                .getCache("shard-test." + UpdateTimestampsCache.REGION_NAME)
+                .getCacheConfiguration()
+                .isEternal());
+        assertEquals(1000, CacheManager.getInstance()
+                .getCache("shard-test.contact-queries")
+                .getCacheConfiguration()
+                .getMaxEntriesLocalHeap());
+    }
+
+    private static String urlPattern() {
+        return "jdbc:h2:mem:rebalance-test" + DATABASES.incrementAndGet() + "-%d;DB_CLOSE_DELAY=-1";
+    }
+
+    //every second one without email, to be routed by name:
+    private static List<Contact> contacts(int count) {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ContactBuilder builder = new ContactBuilder("First" + i, "Last" + i).withPhone(5550000000L + i);
+            if (i % 2 == 0) {
+                builder.withEmail("contact" + i + "@example.com");
+            }
+            contacts.add(builder.build());
+        }
+        return contacts;
+    }
+
+    private static long onShard(List<Contact> contacts, int shard) {
+        return contacts.stream().filter(contact -> ShardRouter.shardFor(contact, 2) == shard).count();
+    }
+
+    //each contact exactly once, on the shard it belongs to:
+    private static void assertPlaced(ShardedContactStore store, List<Contact> contacts) {
+        Map<Long, Contact> all = store.fetchAllContacts();
+        assertEquals(contacts.size(), all.size());
+        for (Map.Entry<Long, Contact> entry : all.entrySet()) {
+            assertEquals(ShardRouter.shardFor(entry.getValue(), 2), ShardRouter.shardOf(entry.getKey()));
+        }
+        Collection<String> names = all.values().stream().map(Contact::getFirstName).collect(Collectors.toSet());
+        assertEquals(contacts.size(), names.size());
+    }
+
+    private static boolean tableExists(SessionFactory factory, String table) {
+        StatelessSession session = factory.openStatelessSession();
+        try {
+            return ((Number) session.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES"
+                    + " WHERE TABLE_NAME = :table")
+                    .setParameter("table", table)
+                    .getSingleResult()).intValue() > 0;
+        } finally {
+            session.close();
+        }
+    }
+}
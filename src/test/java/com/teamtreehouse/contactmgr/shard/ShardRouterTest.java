@@ -0,0 +1,56 @@
+package com.teamtreehouse.contactmgr.shard;
+
+import com.teamtreehouse.contactmgr.model.Contact;
+import com.teamtreehouse.contactmgr.model.Contact.ContactBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardRouterTest {
+    @Test
+    public void globalIdKeepsShardAndId() {
+        long globalId = ShardRouter.globalId(3, 42);
+
+        assertEquals(3, ShardRouter.shardOf(globalId));
+        assertEquals(42, ShardRouter.localId(globalId));
+    }
+
+    @Test
+    public void globalIdKeepsTheWholeIntRange() {
+        for (int id : new int[]{0, 1, Integer.MAX_VALUE, -1, Integer.MIN_VALUE}) {
+            long globalId = ShardRouter.globalId(7, id);
+            assertEquals(7, ShardRouter.shardOf(globalId));
+            assertEquals(id, ShardRouter.localId(globalId));
+        }
+        assertEquals(Integer.MAX_VALUE, ShardRouter.shardOf(ShardRouter.globalId(Integer.MAX_VALUE, -1)));
+    }
+
+    @Test
+    public void emailIsNormalizedBeforeRouting() {
+        Contact upper = new ContactBuilder("A", "B").withEmail(" Moo@X.com ").build();
+        Contact lower = new ContactBuilder("C", "D").withEmail("moo@x.com").build();
+
+        assertEquals("moo@x.com", ShardRouter.shardKey(upper));
+        assertEquals(ShardRouter.shardFor(upper, 8), ShardRouter.shardFor(lower, 8));
+    }
+
+    @Test
+    public void namesAreTheKeyWithoutEmail() {
+        assertEquals("mary smith", ShardRouter.shardKey(new ContactBuilder("Mary", "Smith").build()));
+        assertEquals("mary smith", ShardRouter.shardKey(new ContactBuilder("Mary", "Smith").withEmail(" ").build()));
+    }
+
+    @Test
+    public void shardIsInRangeAndSpread() {
+        int[] counts = new int[4];
+        for (int i = 0; i < 4000; i++) {
+            int shard = ShardRouter.shardFor("contact" + i + "@example.com", counts.length);
+            assertTrue(shard >= 0 && shard < counts.length);
+            counts[shard]++;
+        }
+        for (int count : counts) {
+            assertTrue("uneven: " + count, count > 800 && count < 1200);
+        }
+    }
+}